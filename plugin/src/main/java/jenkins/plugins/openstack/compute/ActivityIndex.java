@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Label;
+import hudson.slaves.Cloud;
+import hudson.slaves.CloudProvisioningListener;
+import hudson.slaves.NodeProvisioner;
+import org.jenkinsci.plugins.cloudstats.CloudStatistics;
+import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
+import org.jenkinsci.plugins.cloudstats.TrackedPlannedNode;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Provisioning activities indexed by the fingerprint of their id.
+ *
+ * The index is built from {@link CloudStatistics#getActivities()} once first needed and the fingerprints of activities
+ * started later are recorded as they are reported. It is rebuilt only when such a fingerprint is looked up, so resolving
+ * the activity of a server does not iterate all the activities. The phase is read from the activity itself so it is
+ * always current. Activities rotated since the last rebuild are still reported, those are completed anyway.
+ */
+@Extension(ordinal = -100) // After cloud-stats has created the activity
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class ActivityIndex extends CloudProvisioningListener {
+
+    // Null until built
+    @GuardedBy("this")
+    private Map<Integer, ProvisioningActivity> index;
+    // Started since the index was built
+    @GuardedBy("this")
+    private final Set<Integer> started = new HashSet<>();
+
+    /*package*/ static @Nonnull ActivityIndex get() {
+        return ExtensionList.lookupSingleton(ActivityIndex.class);
+    }
+
+    @Override
+    public void onStarted(Cloud cloud, Label label, Collection<NodeProvisioner.PlannedNode> plannedNodes) {
+        if (!(cloud instanceof JCloudsCloud)) return;
+
+        for (NodeProvisioner.PlannedNode plannedNode : plannedNodes) {
+            if (plannedNode instanceof TrackedPlannedNode) {
+                started(((TrackedPlannedNode) plannedNode).getId());
+            }
+        }
+    }
+
+    /**
+     * Record activity started outside of {@link NodeProvisioner}.
+     */
+    /*package*/ synchronized void started(@Nonnull ProvisioningActivity.Id id) {
+        started.add(id.getFingerprint());
+    }
+
+    /**
+     * @return Activity with the fingerprint or null if there is none.
+     */
+    /*package*/ @CheckForNull ProvisioningActivity getActivity(int fingerprint) {
+        synchronized (this) {
+            if (index != null && !started.contains(fingerprint)) return index.get(fingerprint);
+        }
+        return rebuild().get(fingerprint);
+    }
+
+    private @Nonnull Map<Integer, ProvisioningActivity> rebuild() {
+        Set<Integer> covered;
+        synchronized (this) {
+            covered = new HashSet<>(started);
+        }
+
+        List<ProvisioningActivity> activities = CloudStatistics.get().getActivities();
+        Map<Integer, ProvisioningActivity> rebuilt = new HashMap<>(activities.size() * 2);
+        for (ProvisioningActivity activity : activities) {
+            rebuilt.putIfAbsent(activity.getId().getFingerprint(), activity);
+        }
+
+        synchronized (this) {
+            index = rebuilt;
+            // Those started during the rebuild might not be included
+            started.removeAll(covered);
+        }
+        return rebuilt;
+    }
+}
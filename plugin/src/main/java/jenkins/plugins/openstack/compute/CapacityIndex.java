@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import hudson.model.Computer;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.compute.Server;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of nodes and servers of a cloud, in total and per template.
+ *
+ * Computers are counted in a single pass when created and servers in a single pass once first needed, so capacity of
+ * all the templates can be checked without iterating them over and over. The counts are a snapshot to be used for a
+ * single provisioning decision.
+ */
+@Restricted(NoExternalUse.class)
+@NotThreadSafe
+/*package*/ final class CapacityIndex {
+
+    private final @Nonnull JCloudsCloud cloud;
+
+    private int nodes;
+    private final @Nonnull Map<String, Integer> nodesByTemplate = new HashMap<>();
+    // Idle, not pending delete nor taken offline by user
+    private final @Nonnull Map<String, Integer> availableByTemplate = new HashMap<>();
+
+    private int servers = -1;
+    private final @Nonnull Map<String, Integer> serversByTemplate = new HashMap<>();
+
+    private CapacityIndex(@Nonnull JCloudsCloud cloud) {
+        this.cloud = cloud;
+    }
+
+    /*package*/ static @Nonnull CapacityIndex of(@Nonnull JCloudsCloud cloud) {
+        CapacityIndex index = new CapacityIndex(cloud);
+        for (Computer c : Jenkins.get().getComputers()) {
+            if (!(c instanceof JCloudsComputer)) continue;
+
+            JCloudsComputer computer = (JCloudsComputer) c;
+            ProvisioningActivity.Id id = computer.getId();
+            if (!cloud.name.equals(id.getCloudName())) continue;
+
+            index.nodes++;
+            String template = id.getTemplateName();
+            if (template == null) continue;
+
+            index.nodesByTemplate.merge(template, 1, Integer::sum);
+            if (computer.isIdle() && !computer.isPendingDelete() && !computer.isUserOffline()) {
+                index.availableByTemplate.merge(template, 1, Integer::sum);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Number of Jenkins nodes of the cloud.
+     */
+    /*package*/ int getNodes() {
+        return nodes;
+    }
+
+    /*package*/ int getNodes(@Nonnull String template) {
+        return nodesByTemplate.getOrDefault(template, 0);
+    }
+
+    /**
+     * Number of nodes of the template ready to take a build.
+     */
+    /*package*/ int getAvailableNodes(@Nonnull String template) {
+        return availableByTemplate.getOrDefault(template, 0);
+    }
+
+    /**
+     * Number of running servers provisioned by the cloud.
+     */
+    /*package*/ int getServers() {
+        indexServers();
+        return servers;
+    }
+
+    /*package*/ int getServers(@Nonnull String template) {
+        indexServers();
+        return serversByTemplate.getOrDefault(template, 0);
+    }
+
+    private void indexServers() {
+        if (servers >= 0) return;
+
+        List<Server> running = cloud.getOpenstack().getRunningNodes(JCloudsCloud.inventoryStaleness);
+        for (Server server : running) {
+            String template = getTemplateName(server);
+            if (template != null) {
+                serversByTemplate.merge(template, 1, Integer::sum);
+            }
+        }
+        servers = running.size();
+    }
+
+    private static @CheckForNull String getTemplateName(@Nonnull Server server) {
+        Map<String, String> metadata = server.getMetadata();
+        return metadata == null ? null : metadata.get(JCloudsSlaveTemplate.OPENSTACK_TEMPLATE_NAME_KEY);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import hudson.XmlFile;
+import hudson.model.Label;
+import hudson.model.Queue;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Predict the number of machines needed per template from the demand observed in the past.
+ *
+ * The demand, busy nodes of the template plus the queued items it can build, is sampled by {@link JCloudsPreCreationThread}
+ * into an hour-of-week histogram smoothed over the weeks. Samples within an hour are reduced to their peak, which is
+ * blended with the past weeks once the hour is over, so every week weights the same however often it was sampled. The
+ * peak of the hour in progress is blended in already. The effective instancesMin is raised to the demand predicted
+ * for the current and the upcoming hour, so machines are created ahead of the peak and retired once it is over. The
+ * configured instancesMin remains the floor and instanceCap the ceiling. The histograms survive restarts. Disabled unless
+ * {@code jenkins.plugins.openstack.compute.DemandForecast.enabled} is set.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class DemandForecast {
+    private static final Logger LOGGER = Logger.getLogger(DemandForecast.class.getName());
+
+    /*package*/ static boolean enabled = Boolean.getBoolean(DemandForecast.class.getName() + ".enabled");
+    // How far ahead to prepare for the demand, in milliseconds
+    /*package*/ static long leadTime = Long.getLong(DemandForecast.class.getName() + ".leadTime", TimeUnit.HOURS.toMillis(1));
+
+    private static final int SLOTS = 7 * 24;
+    // Weight of the latest week in its slot, the history of past weeks weights the rest
+    private static final double SMOOTHING = 0.3;
+
+    private static volatile @CheckForNull DemandForecast instance;
+
+    private final @CheckForNull XmlFile file;
+
+    @GuardedBy("this")
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+
+    /*package*/ DemandForecast(@CheckForNull XmlFile file) {
+        this.file = file;
+        load();
+    }
+
+    /*package*/ static @Nonnull DemandForecast get() {
+        DemandForecast forecast = instance;
+        if (forecast == null) {
+            synchronized (DemandForecast.class) {
+                forecast = instance;
+                if (forecast == null) {
+                    XmlFile file = new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.get().getRootDir(), DemandForecast.class.getName() + ".xml"));
+                    forecast = new DemandForecast(file);
+                    instance = forecast;
+                }
+            }
+        }
+        return forecast;
+    }
+
+    /**
+     * Minimal number of ready instances of the template, raised to the predicted demand when enabled.
+     */
+    /*package*/ static int getInstancesMin(@Nonnull JCloudsCloud cloud, @Nonnull JCloudsSlaveTemplate template) {
+        SlaveOptions opts = template.getEffectiveSlaveOptions();
+        int min = opts.getInstancesMin();
+        if (!enabled) return min;
+
+        int predicted = get().getForecast(key(cloud, template), System.currentTimeMillis());
+        return Math.max(min, Math.min(predicted, opts.getInstanceCap()));
+    }
+
+    /**
+     * Record the current demand of all templates of all clouds.
+     */
+    /*package*/ static void sample() {
+        Map<String, Integer> demand = new HashMap<>();
+        Map<String, Integer> executors = new HashMap<>();
+        for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
+            for (JCloudsSlaveTemplate template : cloud.getTemplates()) {
+                demand.put(key(cloud, template), 0);
+                executors.put(key(cloud, template), template.getEffectiveSlaveOptions().getNumExecutors());
+            }
+        }
+
+        for (JCloudsComputer computer : JCloudsComputer.getAll()) {
+            if (computer.isIdle()) continue;
+
+            String key = computer.getId().getCloudName() + "/" + computer.getId().getTemplateName();
+            demand.computeIfPresent(key, (k, v) -> v + 1);
+        }
+
+        // Count each item for the template that would be provisioned for it first
+        Map<String, Integer> queued = new HashMap<>();
+        for (Queue.BuildableItem item : Jenkins.get().getQueue().getBuildableItems()) {
+            String key = findTemplate(item.getAssignedLabel());
+            if (key != null) {
+                queued.merge(key, 1, Integer::sum);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : queued.entrySet()) {
+            int numExecutors = Math.max(1, executors.getOrDefault(entry.getKey(), 1));
+            int machines = (entry.getValue() + numExecutors - 1) / numExecutors;
+            demand.computeIfPresent(entry.getKey(), (k, v) -> v + machines);
+        }
+
+        get().record(demand, System.currentTimeMillis());
+    }
+
+    /**
+     * Template that would be provisioned for the label first.
+     *
+     * @return Key of the template.
+     */
+    /*package*/ static @CheckForNull String findTemplate(@CheckForNull Label label) {
+        for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
+            for (JCloudsSlaveTemplate template : cloud.getTemplates()) {
+                if (template.canProvision(label)) return key(cloud, template);
+            }
+        }
+        return null;
+    }
+
+    /*package*/ static @Nonnull String key(@Nonnull JCloudsCloud cloud, @Nonnull JCloudsSlaveTemplate template) {
+        return cloud.name + "/" + template.getName();
+    }
+
+    /**
+     * Add demand sample.
+     *
+     * @param demand Number of machines needed, indexed by template. Templates not present are forgotten.
+     */
+    /*package*/ void record(@Nonnull Map<String, Integer> demand, long time) {
+        long hour = hour(time);
+        int slot = slot(time);
+        synchronized (this) {
+            histograms.keySet().retainAll(demand.keySet());
+            for (Map.Entry<String, Integer> entry : demand.entrySet()) {
+                histograms.computeIfAbsent(entry.getKey(), k -> new Histogram()).record(hour, slot, entry.getValue());
+            }
+        }
+        save();
+    }
+
+    /**
+     * Number of machines predicted to be needed now and within the lead time.
+     */
+    /*package*/ synchronized @Nonnegative int getForecast(@Nonnull String key, long time) {
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) return 0;
+
+        double predicted = Math.max(histogram.get(slot(time)), histogram.get(slot(time + leadTime)));
+        return (int) Math.ceil(predicted);
+    }
+
+    private static long hour(long time) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS).toEpochSecond();
+    }
+
+    private static int slot(long time) {
+        ZonedDateTime date = ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        return (date.getDayOfWeek().getValue() - 1) * 24 + date.getHour();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (file == null || !file.exists()) return;
+        try {
+            Map<String, Histogram> loaded = (Map<String, Histogram>) file.read();
+            synchronized (this) {
+                for (Map.Entry<String, Histogram> entry : loaded.entrySet()) {
+                    if (entry.getValue().isValid()) {
+                        histograms.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Unable to load demand forecast from " + file, ex);
+        }
+    }
+
+    private void save() {
+        if (file == null) return;
+        try {
+            Map<String, Histogram> copy;
+            synchronized (this) {
+                copy = new TreeMap<>();
+                for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                    copy.put(entry.getKey(), entry.getValue().copy());
+                }
+            }
+            file.write(copy);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to save demand forecast to " + file, ex);
+        }
+    }
+
+    private static final class Histogram {
+        // Smoothed peak per hour of week, NaN until first observed
+        private double[] weeks = new double[SLOTS];
+        // Hour in progress, its slot and the peak observed so far
+        private long hour = Long.MIN_VALUE;
+        private int slot = -1;
+        private double peak;
+
+        private Histogram() {
+            Arrays.fill(weeks, Double.NaN);
+        }
+
+        private void record(long hour, int slot, int demand) {
+            if (this.hour != hour) {
+                if (this.slot >= 0) {
+                    weeks[this.slot] = blend(this.slot);
+                }
+                this.hour = hour;
+                this.slot = slot;
+                this.peak = demand;
+            } else {
+                peak = Math.max(peak, demand);
+            }
+        }
+
+        private double get(int slot) {
+            double value = slot == this.slot ? blend(slot) : weeks[slot];
+            return Double.isNaN(value) ? 0 : value;
+        }
+
+        private double blend(int slot) {
+            double past = weeks[slot];
+            return Double.isNaN(past) ? peak : past + SMOOTHING * (peak - past);
+        }
+
+        private boolean isValid() {
+            return weeks != null && weeks.length == SLOTS && slot < SLOTS;
+        }
+
+        private @Nonnull Histogram copy() {
+            Histogram copy = new Histogram();
+            copy.weeks = weeks.clone();
+            copy.hour = hour;
+            copy.slot = slot;
+            copy.peak = peak;
+            return copy;
+        }
+    }
+}
@@ -2,18 +2,30 @@ package jenkins.plugins.openstack.compute;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import hudson.ExtensionList;
+import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.Result;
 import hudson.slaves.OfflineCause;
 import jenkins.model.CauseOfInterruption;
+import jenkins.plugins.openstack.compute.internal.ConcurrencyLimiter;
 import jenkins.plugins.openstack.compute.internal.DestroyMachine;
 import jenkins.plugins.openstack.compute.internal.Openstack;
 import org.jenkinsci.plugins.resourcedisposer.AsyncResourceDisposer;
@@ -27,6 +39,7 @@ import org.openstack4j.api.exceptions.ClientResponseException;
 import org.openstack4j.api.exceptions.StatusCode;
 import org.openstack4j.model.compute.Server;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 /**
@@ -37,44 +50,133 @@ import javax.annotation.Nonnull;
  * - Node pending deletion get terminated with their servers.
  * - Servers that are running longer than declared are terminated.
  * - Nodes with server missing are terminated.
+ * - Floating IPs leaked are released.
+ *
+ * Clouds are swept in parallel, each within its own timeout, so one slow or failing cloud does not delay the others.
+ * The sweep can be requested out of the regular period by {@link #sweepNow()}.
  */
 @Extension @Restricted(NoExternalUse.class)
 public final class JCloudsCleanupThread extends AsyncPeriodicWork {
     private static final Logger LOGGER = Logger.getLogger(JCloudsCleanupThread.class.getName());
 
+    /*package*/ static long period = Long.getLong(JCloudsCleanupThread.class.getName() + ".period", TimeUnit.MINUTES.toMillis(10));
+    // Maximal time to wait for the sweep of single cloud, in milliseconds
+    /*package*/ static long cloudTimeout = Long.getLong(JCloudsCleanupThread.class.getName() + ".cloudTimeout", TimeUnit.MINUTES.toMillis(5));
+
+    // Clouds with sweep in progress, possibly left behind by previous run after timeout
+    private final Set<String> sweeping = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean sweepRequested = new AtomicBoolean();
+
     public JCloudsCleanupThread() {
         super("OpenStack slave cleanup");
     }
 
     @Override
     public long getRecurrencePeriod() {
-        return MIN * 10;
+        return period;
+    }
+
+    /**
+     * Start the cleanup right away, or once more after the one in progress completes.
+     *
+     * Useful after terminating many machines, so their resources are released without waiting for the next period.
+     */
+    public static void sweepNow() {
+        JCloudsCleanupThread thread = ExtensionList.lookupSingleton(JCloudsCleanupThread.class);
+        thread.sweepRequested.set(true);
+        thread.doRun();
     }
 
     @Override
     public void execute(TaskListener listener) {
-        try {
-            terminateNodesPendingDeletion();
-
-            @Nonnull HashMap<JCloudsCloud, List<Server>> runningServers = destroyServersOutOfScope();
+        do {
+            sweepRequested.set(false);
+            try {
+                // Cleanup releases resources provisioning might be waiting for
+                ConcurrencyLimiter.prioritized(() -> {
+                    terminateNodesPendingDeletion();
+
+                    @Nonnull HashMap<JCloudsCloud, List<Server>> runningServers = sweepClouds();
+
+                    terminatesNodesWithoutServers(runningServers);
+                });
+            } catch (JCloudsCloud.LoginFailure ex) {
+                LOGGER.log(Level.WARNING, "Unable to authenticate: " + ex.getMessage());
+            } catch (Throwable ex) {
+                LOGGER.log(Level.SEVERE, "Unable to perform the cleanup", ex);
+            }
+        } while (sweepRequested.get());
+    }
 
-            terminatesNodesWithoutServers(runningServers);
+    /**
+     * Sweep all clouds in parallel.
+     *
+     * @return Servers not destroyed as they are in scope, for clouds swept completely.
+     */
+    private @Nonnull HashMap<JCloudsCloud, List<Server>> sweepClouds() {
+        Map<JCloudsCloud, Future<List<Server>>> sweeps = new HashMap<>();
+        for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
+            if (!sweeping.add(cloud.name)) {
+                LOGGER.info("Skipping cleanup of " + cloud + " as the previous one is still in progress");
+                continue;
+            }
+            sweeps.put(cloud, Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    AtomicReference<List<Server>> running = new AtomicReference<>();
+                    ConcurrencyLimiter.prioritized(() -> running.set(sweepCloud(cloud)));
+                    return running.get();
+                } finally {
+                    sweeping.remove(cloud.name);
+                }
+            }));
+        }
 
-            cleanOrphanedFips();
-        } catch (JCloudsCloud.LoginFailure ex) {
-            LOGGER.log(Level.WARNING, "Unable to authenticate: " + ex.getMessage());
-        } catch (Throwable ex) {
-            LOGGER.log(Level.SEVERE, "Unable to perform the cleanup", ex);
+        HashMap<JCloudsCloud, List<Server>> runningServers = new HashMap<>();
+        long end = System.currentTimeMillis() + cloudTimeout;
+        for (Map.Entry<JCloudsCloud, Future<List<Server>>> entry : sweeps.entrySet()) {
+            JCloudsCloud cloud = entry.getKey();
+            try {
+                List<Server> running = entry.getValue().get(Math.max(end - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                if (running != null) {
+                    runningServers.put(cloud, running);
+                }
+            } catch (TimeoutException ex) {
+                LOGGER.warning("Cleanup of " + cloud + " did not complete within " + cloudTimeout + "ms");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof JCloudsCloud.LoginFailure) {
+                    LOGGER.log(Level.WARNING, "Unable to authenticate to " + cloud + ": " + cause.getMessage());
+                } else {
+                    LOGGER.log(Level.SEVERE, "Unable to perform the cleanup of " + cloud, cause);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
+        return runningServers;
     }
 
-    private void cleanOrphanedFips() {
-        for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
-            Openstack openstack = cloud.getOpenstack();
+    /**
+     * @return Servers not destroyed as they are in scope, null if the cloud was not swept.
+     */
+    private @CheckForNull List<Server> sweepCloud(@Nonnull JCloudsCloud cloud) {
+        if (cloud.isUnavailable()) {
+            LOGGER.info("Skipping cleanup of unavailable " + cloud);
+            return null;
+        }
 
-            List<String> leaked = openstack.getFreeFipIds();
-            if (leaked.isEmpty()) return;
+        List<Server> running = destroyServersOutOfScope(cloud);
+        cleanOrphanedFips(cloud);
+        return running;
+    }
 
+    private void cleanOrphanedFips(@Nonnull JCloudsCloud cloud) {
+        Openstack openstack = cloud.getOpenstack();
+
+        List<String> leaked = openstack.getFreeFipIds();
+        if (!leaked.isEmpty()) {
             LOGGER.info("Cleaning up floating IPs leaked from cloud " + cloud.name + ": " + leaked);
 
             for (String fip : leaked) {
@@ -85,6 +187,15 @@ public final class JCloudsCleanupThread extends AsyncPeriodicWork {
                 }
             }
         }
+
+        Set<String> pools = new HashSet<>();
+        for (JCloudsSlaveTemplate template : cloud.getTemplates()) {
+            String pool = template.getEffectiveSlaveOptions().getFloatingIpPool();
+            if (pool != null) {
+                pools.add(pool);
+            }
+        }
+        openstack.reclaimFipReserve(pools);
     }
 
     private void terminateNodesPendingDeletion() {
@@ -153,19 +264,16 @@ public final class JCloudsCleanupThread extends AsyncPeriodicWork {
     /**
      * @return Servers not destroyed as they are in scope.
      */
-    private @Nonnull HashMap<JCloudsCloud, List<Server>> destroyServersOutOfScope() {
-        HashMap<JCloudsCloud, List<Server>> runningServers = new HashMap<>();
-        for (JCloudsCloud jc : JCloudsCloud.getClouds()) {
-            runningServers.put(jc, new ArrayList<>());
-            List<Server> servers = jc.getOpenstack().getRunningNodes();
-            for (Server server : servers) {
-                ServerScope scope = ServerScope.extract(server);
-                if (scope.isOutOfScope(server)) {
-                    LOGGER.info("Server " + server.getName() + " run out of its scope " + scope + ". Terminating: " + server);
-                    AsyncResourceDisposer.get().dispose(new DestroyMachine(jc.name, server.getId()));
-                } else {
-                    runningServers.get(jc).add(server);
-                }
+    private @Nonnull List<Server> destroyServersOutOfScope(@Nonnull JCloudsCloud jc) {
+        List<Server> runningServers = new ArrayList<>();
+        List<Server> servers = jc.getOpenstack().getRunningNodes();
+        for (Server server : servers) {
+            ServerScope scope = ServerScope.extract(server);
+            if (scope.isOutOfScope(server)) {
+                LOGGER.info("Server " + server.getName() + " run out of its scope " + scope + ". Terminating: " + server);
+                AsyncResourceDisposer.get().dispose(new DestroyMachine(jc.name, server.getId()));
+            } else {
+                runningServers.add(server);
             }
         }
 
@@ -201,6 +309,8 @@ public final class JCloudsCleanupThread extends AsyncPeriodicWork {
                 // enough in this, we can do the cleanup anyway
                 continue;
             }
+            // Servers not listed, nothing to conclude
+            if (!runningServers.containsKey(cloud)) continue;
 
             try { // Double check server does not exist before interrupting jobs
                 Server explicitLookup = cloud.getOpenstack().getServerById(id);
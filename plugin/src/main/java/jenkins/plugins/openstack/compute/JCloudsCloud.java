@@ -2,17 +2,21 @@ package jenkins.plugins.openstack.compute;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import hudson.Extension;
 import hudson.Util;
+import hudson.XmlFile;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Failure;
 import hudson.model.Item;
 import hudson.model.Label;
 import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
 import hudson.security.ACLContext;
 import hudson.slaves.Cloud;
@@ -26,7 +30,9 @@ import jenkins.plugins.openstack.compute.auth.OpenstackCredential;
 import jenkins.plugins.openstack.compute.auth.OpenstackCredentials;
 import jenkins.plugins.openstack.compute.auth.OpenstackCredentialv2;
 import jenkins.plugins.openstack.compute.auth.OpenstackCredentialv3;
+import jenkins.plugins.openstack.compute.internal.CircuitBreaker;
 import jenkins.plugins.openstack.compute.internal.Openstack;
+import jenkins.plugins.openstack.compute.internal.QuotaTracker;
 import jenkins.plugins.openstack.compute.slaveopts.LauncherFactory;
 import jenkins.util.Timer;
 import org.jenkinsci.Symbol;
@@ -37,6 +43,8 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -66,7 +74,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import static java.lang.Boolean.TRUE;
 
@@ -92,7 +99,12 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
 
     private /*final*/ @Nonnull String credentialId; // Name differs from property name not to break the persistence
 
-    private static final int MaxProvisioningExcessWorkLoadCap = 10;
+    // Maximal age of the server inventory acceptable for capacity decisions, in milliseconds
+    /*package*/ static long inventoryStaleness = Long.getLong(JCloudsCloud.class.getName() + ".inventoryStaleness", 5000);
+
+    // How long the resolved credentials are trusted before looked up again, in milliseconds. Saving the credentials
+    // invalidates them right away, this only catches providers that change them in memory.
+    /*package*/ static long credentialsRecheck = Long.getLong(JCloudsCloud.class.getName() + ".credentialsRecheck", 10000);
 
     // Backward compatibility
     private transient @Deprecated Integer instanceCap;
@@ -102,6 +114,13 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
     private transient @Deprecated String identity;
     private transient @Deprecated Secret credential;
 
+    // Connection for the credentials resolved last. Rechecked on credentials save, discarded on login failure, config
+    // save replaces the cloud instance.
+    private transient volatile @CheckForNull ResolvedConnection connection;
+
+    // Created on first use, starts over when config save replaces the cloud instance
+    private transient volatile @CheckForNull ProvisioningBurst provisioningBurst;
+
     public static @Nonnull List<JCloudsCloud> getClouds() {
         List<JCloudsCloud> clouds = new ArrayList<>();
         for (Cloud c : Jenkins.get().clouds) {
@@ -240,26 +259,23 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
      * Get a queue of templates to be used to provision slaves of label.
      *
      * The queue contains the same template in as many instances as is the number of machines that can be safely
-     * provisioned without violating instanceCap constrain.
+     * provisioned without violating instanceCap constrain, limited by the {@link ProvisioningBurst} of the template.
+     * The project quota of every machine is reserved, the caller is expected to cancel reservations of those not provisioned.
      */
-    private @Nonnull Queue<JCloudsSlaveTemplate> getAvailableTemplateProvider(@CheckForNull Label label, int excessWorkload) {
+    private @Nonnull Queue<PlannedMachine> getAvailableTemplateProvider(@CheckForNull Label label, int excessWorkload) {
         final int globalMax = getEffectiveSlaveOptions().getInstanceCap();
 
-        final Queue<JCloudsSlaveTemplate> queue = new ConcurrentLinkedDeque<>();
+        final Queue<PlannedMachine> queue = new ConcurrentLinkedDeque<>();
 
-        List<JCloudsComputer> cloudComputers = JCloudsComputer.getAll().stream().filter(
-                it -> name.equals(it.getId().getCloudName())
-        ).collect(Collectors.toList());
+        // Count all templates at once
+        CapacityIndex index = CapacityIndex.of(this);
 
-        int nodeCount = cloudComputers.size();
+        int nodeCount = index.getNodes();
         if (nodeCount >= globalMax) {
             return queue; // more slaves then declared - no need to query openstack
         }
 
-
-        final List<Server> runningNodes = getOpenstack().getRunningNodes();
-
-        int serverCount = runningNodes.size();
+        int serverCount = index.getServers();
         if (serverCount >= globalMax) {
             return queue; // more servers than needed - no need to proceed any further
         }
@@ -267,24 +283,41 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
         int globalCapacity = globalMax - Math.max(nodeCount, serverCount);
         assert globalCapacity > 0;
 
+        // Try a single machine while the API is recovering
+        if (getApiState() == CircuitBreaker.State.HALF_OPEN) {
+            globalCapacity = 1;
+        }
+
+        ProvisioningBurst burst = getProvisioningBurst();
+        QueueWaitController controller = QueueWaitController.get();
+        // Machines that would exceed the project quota fail anyway, do not even try
+        QuotaTracker.Headroom headroom = getOpenstack().getQuotaHeadroom();
+
         for (JCloudsSlaveTemplate t : templates) {
             if (t.canProvision(label)) {
                 SlaveOptions opts = t.getEffectiveSlaveOptions();
                 final int templateMax = opts.getInstanceCap();
-                long templateNodeCount = Math.max(
-                        cloudComputers.stream().filter(it -> t.getName().equals(it.getId().getTemplateName())).count(),
-                        runningNodes.stream().filter(t::hasProvisioned).count()
-                );
+                long templateNodeCount = Math.max(index.getNodes(t.getName()), index.getServers(t.getName()));
                 if (templateNodeCount >= templateMax) continue; // Exceeded
 
-                long templateCapacity = templateMax - templateNodeCount;
+                // Catch up with the queue wait target at once, unless backing off
+                int templateBurst = burst.getSize(t.getName(), controller.getWarmPool(DemandForecast.key(this, t)));
+                long templateCapacity = Math.min(templateMax - templateNodeCount, templateBurst);
                 assert templateCapacity > 0;
 
                 for (int i = 0; i < templateCapacity; i++) {
                     int size = queue.size();
                     if (size >= globalCapacity || size >= excessWorkload) return queue;
-
-                    queue.add(t);
+                    QuotaTracker.Reservation reservation = null;
+                    if (headroom != null) {
+                        reservation = headroom.take(opts.getHardwareId(), opts.getFloatingIpPool() != null);
+                        if (reservation == null) {
+                            LOGGER.fine("Quota exceeded for template " + t.getName() + " in cloud " + name);
+                            break;
+                        }
+                    }
+
+                    queue.add(new PlannedMachine(t, reservation));
                 }
             }
         }
@@ -295,45 +328,77 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
     @Override
     public Collection<NodeProvisioner.PlannedNode> provision(CloudState cs, int excessWorkload) {
         Label label = cs.getLabel();
-        excessWorkload = Math.min(excessWorkload, MaxProvisioningExcessWorkLoadCap);
-        Queue<JCloudsSlaveTemplate> templateProvider = getAvailableTemplateProvider(label, excessWorkload);
+        Queue<PlannedMachine> templateProvider = getAvailableTemplateProvider(label, excessWorkload);
 
         List<PlannedNode> plannedNodeList = new ArrayList<>();
         while (excessWorkload > 0 && !Jenkins.get().isQuietingDown() && !Jenkins.get().isTerminating()) {
 
-            final JCloudsSlaveTemplate template = templateProvider.poll();
-            if (template == null) {
+            final PlannedMachine machine = templateProvider.poll();
+            if (machine == null) {
                 LOGGER.info("Instance cap exceeded for cloud " + name + " while provisioning for label " + label);
                 break;
             }
+            final JCloudsSlaveTemplate template = machine.template;
 
             LOGGER.fine("Provisioning slave for " + label + " from template " + template.getName());
 
             int numExecutors = template.getEffectiveSlaveOptions().getNumExecutors();
 
             ProvisioningActivity.Id id = new ProvisioningActivity.Id(this.name, template.getName());
-            Future<Node> task = Computer.threadPoolForRemoting.submit(new NodeCallable(this, template, id));
+            Future<Node> task = Computer.threadPoolForRemoting.submit(new NodeCallable(this, template, id, machine.reservation));
             plannedNodeList.add(new TrackedPlannedNode(id, numExecutors, task));
 
             excessWorkload -= numExecutors;
         }
+
+        // Planned but not needed
+        for (PlannedMachine unused; (unused = templateProvider.poll()) != null; ) {
+            if (unused.reservation != null) {
+                unused.reservation.cancel();
+            }
+        }
         return plannedNodeList;
     }
 
+    private static final class PlannedMachine {
+        private final @Nonnull JCloudsSlaveTemplate template;
+        private final @CheckForNull QuotaTracker.Reservation reservation;
+
+        private PlannedMachine(@Nonnull JCloudsSlaveTemplate template, @CheckForNull QuotaTracker.Reservation reservation) {
+            this.template = template;
+            this.reservation = reservation;
+        }
+    }
+
     private static final class NodeCallable implements Callable<Node> {
         private final JCloudsCloud cloud;
         private final JCloudsSlaveTemplate template;
         private final ProvisioningActivity.Id id;
+        private final @CheckForNull QuotaTracker.Reservation reservation;
 
-        NodeCallable(JCloudsCloud cloud, JCloudsSlaveTemplate template, ProvisioningActivity.Id id) {
+        NodeCallable(JCloudsCloud cloud, JCloudsSlaveTemplate template, ProvisioningActivity.Id id, @CheckForNull QuotaTracker.Reservation reservation) {
             this.cloud = cloud;
             this.template = template;
             this.id = id;
+            this.reservation = reservation;
         }
 
         @Override
         public Node call() {
-            JCloudsSlave jcloudsSlave = template.provisionSlave(cloud, id);
+            // The quota reserved when planned is held until the machine is booted
+            return reservation == null ? provision() : reservation.provision(this::provision);
+        }
+
+        private Node provision() {
+            ProvisioningBurst burst = cloud.getProvisioningBurst();
+            JCloudsSlave jcloudsSlave;
+            try {
+                jcloudsSlave = template.provisionSlave(cloud, id);
+            } catch (RuntimeException | Error ex) {
+                burst.failed(template.getName());
+                throw ex;
+            }
+            burst.succeeded(template.getName());
 
             LOGGER.fine(String.format("Slave %s launched successfully", jcloudsSlave.getDisplayName()));
             return jcloudsSlave;
@@ -345,8 +410,23 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
         return slave.getSlaveOptions().getLauncherFactory().isWaitingFor(slave);
     }
 
+    /*package*/ @Nonnull ProvisioningBurst getProvisioningBurst() {
+        ProvisioningBurst burst = provisioningBurst;
+        if (burst == null) {
+            synchronized (this) {
+                burst = provisioningBurst;
+                if (burst == null) {
+                    provisioningBurst = burst = new ProvisioningBurst();
+                }
+            }
+        }
+        return burst;
+    }
+
     @Override
     public boolean canProvision(final CloudState cs) {
+        if (isUnavailable()) return false;
+
         for (JCloudsSlaveTemplate t : templates)
             if (t.canProvision(cs.getLabel()))
                 return true;
@@ -392,7 +472,7 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
             return;
         }
 
-        List<Server> nodes = getOpenstack().getRunningNodes();
+        List<Server> nodes = getOpenstack().getRunningNodes(inventoryStaleness);
         final int global = nodes.size();
 
         int globalCap = getEffectiveSlaveOptions().getInstanceCap();
@@ -468,6 +548,7 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
         JCloudsSlave node;
         try {
             provisioningListener.onStarted(id);
+            ActivityIndex.get().started(id);
             node = template.provisionSlave(this, id);
             provisioningListener.onComplete(id, node);
         } catch (Throwable ex) {
@@ -485,23 +566,118 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
      */
     @Restricted(NoExternalUse.class)
     public @Nonnull Openstack getOpenstack() throws LoginFailure {
+        ResolvedConnection resolved = this.connection;
         try {
-            OpenstackCredential credential = OpenstackCredentials.getCredential(getCredentialsId());
-            if (credential == null) {
-                throw new LoginFailure("No credentials found for cloud " + name + " (id=" + getCredentialsId() + ")");
+            if (resolved == null || resolved.isExpired()) {
+                OpenstackCredential credential = OpenstackCredentials.getCredential(getCredentialsId());
+                if (credential == null) {
+                    throw new LoginFailure("No credentials found for cloud " + name + " (id=" + getCredentialsId() + ")");
+                }
+
+                // Credentials are immutable so the fingerprint is computed again only once they are replaced
+                Openstack.Connection established = resolved != null && resolved.credential == credential
+                        ? resolved.connection
+                        : new Openstack.Connection(endPointUrl, ignoreSsl, credential, zone)
+                ;
+                resolved = new ResolvedConnection(established, credential);
+                this.connection = resolved;
             }
-            return Openstack.Factory.get(endPointUrl, ignoreSsl, credential, zone);
+            return Openstack.Factory.get(resolved.connection);
         } catch (AuthenticationException ex) {
+            forget(resolved);
             throw new LoginFailure(name, ex);
         } catch (FormValidation ex) {
+            forget(resolved);
             throw new LoginFailure(name, ex);
         }
     }
 
+    /**
+     * Look the credentials up again on next use.
+     */
+    private void recheckCredentials() {
+        ResolvedConnection resolved = connection;
+        if (resolved != null) {
+            connection = resolved.expire();
+        }
+    }
+
+    private void forget(@CheckForNull ResolvedConnection resolved) {
+        if (resolved == null) return;
+
+        connection = null;
+        Openstack.FactoryEP.invalidate(resolved.connection);
+    }
+
     public String getCredentialsId() {
         return credentialId;
     }
 
+    private @CheckForNull Openstack getOpenstackIfConnected() {
+        ResolvedConnection resolved = connection;
+        return resolved == null ? null : Openstack.FactoryEP.getIfPresent(resolved.connection);
+    }
+
+    /**
+     * OpenStack of this cloud is failing so it should not be called for now.
+     *
+     * This does not connect to OpenStack, so it is cheap to call often.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isUnavailable() {
+        Openstack openstack = getOpenstackIfConnected();
+        return openstack != null && openstack.isUnavailable();
+    }
+
+    /**
+     * State of calls to OpenStack of this cloud, null if not connected.
+     */
+    @Restricted(NoExternalUse.class) // Jelly
+    public @CheckForNull CircuitBreaker.State getApiState() {
+        Openstack openstack = getOpenstackIfConnected();
+        return openstack == null ? null : openstack.getApiState();
+    }
+
+    private static final class ResolvedConnection {
+        private final @Nonnull Openstack.Connection connection;
+        private final @Nonnull OpenstackCredential credential;
+        private final long resolvedAt;
+
+        private ResolvedConnection(@Nonnull Openstack.Connection connection, @Nonnull OpenstackCredential credential) {
+            this(connection, credential, System.nanoTime());
+        }
+
+        private ResolvedConnection(@Nonnull Openstack.Connection connection, @Nonnull OpenstackCredential credential, long resolvedAt) {
+            this.connection = connection;
+            this.credential = credential;
+            this.resolvedAt = resolvedAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - resolvedAt >= TimeUnit.MILLISECONDS.toNanos(credentialsRecheck);
+        }
+
+        private @Nonnull ResolvedConnection expire() {
+            long recheck = TimeUnit.MILLISECONDS.toNanos(credentialsRecheck);
+            return new ResolvedConnection(connection, credential, System.nanoTime() - recheck);
+        }
+    }
+
+    /**
+     * Have the clouds look their credentials up again once the system credentials are saved.
+     */
+    @Extension @Restricted(NoExternalUse.class)
+    public static final class CredentialsSaveListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (!(o instanceof SystemCredentialsProvider)) return;
+
+            for (JCloudsCloud cloud : getClouds()) {
+                cloud.recheckCredentials();
+            }
+        }
+    }
+
     @Restricted(DoNotUse.class) // Jelly
     public boolean getIgnoreSsl() {
         return ignoreSsl;
@@ -538,6 +714,19 @@ public class JCloudsCloud extends Cloud implements SlaveOptions.Holder {
             return DEFAULTS;
         }
 
+        /**
+         * Run the cleanup of all clouds now, to release resources of terminated machines without waiting for the next period.
+         *
+         * Served by the descriptor as the cleanup is not specific to any cloud.
+         */
+        @Restricted(NoExternalUse.class)
+        @RequirePOST
+        public HttpResponse doSweep() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            JCloudsCleanupThread.sweepNow();
+            return HttpResponses.ok();
+        }
+
         @Restricted(DoNotUse.class)
         @RequirePOST
         public FormValidation doCheckName(@QueryParameter String value) {
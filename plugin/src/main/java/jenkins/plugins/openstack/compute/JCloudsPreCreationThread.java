@@ -1,18 +1,38 @@
 package jenkins.plugins.openstack.compute;
 
 import java.lang.Math;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nonnull;
+
+import jenkins.model.Jenkins;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
 
 import hudson.Extension;
 import hudson.Functions;
 import hudson.model.TaskListener;
 import hudson.model.AsyncPeriodicWork;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 /**
  * Periodically ensure enough slaves are created.
@@ -33,11 +53,37 @@ import hudson.model.AsyncPeriodicWork;
  *
  * The pre-provisioning always respects the instance capacity (either global or
  * per template).
+ *
+ * Instances are created in parallel, so slow or failing templates do not delay
+ * the others. A template that failed is probed with a single instance per run
+ * until it succeeds again.
+ *
+ * When {@link DemandForecast} is enabled, the minimum is raised ahead of the
+ * demand predicted from the past weeks. Templates with queue wait target get
+ * the warm pool computed by {@link QueueWaitController} on top of that.
  */
 @Extension @Restricted(NoExternalUse.class)
 public final class JCloudsPreCreationThread extends AsyncPeriodicWork {
     private static final Logger LOGGER = Logger.getLogger(JCloudsPreCreationThread.class.getName());
 
+    /*package*/ static int parallelism = Integer.getInteger(JCloudsPreCreationThread.class.getName() + ".parallelism", 10);
+    // Maximal time a run waits for the instances to be created, in milliseconds
+    /*package*/ static long deadline = Long.getLong(JCloudsPreCreationThread.class.getName() + ".deadline", TimeUnit.SECONDS.toMillis(90));
+
+    // Resized to the current parallelism before every run
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "OpenStack slave pre-creation")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    // Indexed by template
+    private final Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
     public JCloudsPreCreationThread() {
         super("OpenStack slave pre-creation");
     }
@@ -49,47 +95,121 @@ public final class JCloudsPreCreationThread extends AsyncPeriodicWork {
 
     @Override
     public void execute(TaskListener listener) {
+        if (DemandForecast.enabled) {
+            DemandForecast.sample();
+        }
+        QueueWaitController.get().update();
+
         HashMap<JCloudsSlaveTemplate, JCloudsCloud> requiredCapacity = new HashMap<>();
+        Set<String> configured = new HashSet<>();
         for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
             for (JCloudsSlaveTemplate template : cloud.getTemplates()) {
-                SlaveOptions to = template.getEffectiveSlaveOptions();
-                if (to.getInstancesMin() > 0) {
+                configured.add(DemandForecast.key(cloud, template));
+                if (getInstancesMin(cloud, template) > 0) {
                     requiredCapacity.put(template, cloud);
                 }
             }
         }
+        // Forget templates removed, instances still being created keep their outcome referenced
+        outcomes.keySet().retainAll(configured);
 
         if (requiredCapacity.isEmpty()) return; // No capacity required anywhere
 
+        resize(Math.max(parallelism, 1));
+
+        // Count nodes and servers once per cloud, not per template
+        Map<JCloudsCloud, CapacityIndex> indexes = new HashMap<>();
+        Authentication auth = Jenkins.getAuthentication2();
+        List<Future<?>> futures = new ArrayList<>();
         for (Map.Entry<JCloudsSlaveTemplate, JCloudsCloud> entry : requiredCapacity.entrySet()) {
             JCloudsCloud cloud = entry.getValue();
             JCloudsSlaveTemplate template = entry.getKey();
+            if (cloud.isUnavailable()) continue;
+
+            CapacityIndex index = indexes.computeIfAbsent(cloud, CapacityIndex::of);
+
             SlaveOptions so = template.getEffectiveSlaveOptions();
-            Integer min = so.getInstancesMin();
+            int min = getInstancesMin(cloud, template);
             Integer cap = so.getInstanceCap();
 
-            int available = template.getAvailableNodesTotal();
+            int available = index.getAvailableNodes(template.getName());
             if (available >= min) continue; // Satisfied
             if (available >= cap) continue; // Obey instanceCap even if instanceMin > instanceCap
 
-            int runningNodes = template.getRunningNodes().size();
+            int runningNodes = index.getServers(template.getName());
 
             if (runningNodes >= cap) continue; // Obey instanceCap
 
-            int permitted = cap - runningNodes;
-            int desired = min - available;
+            // Instances still being created by previous runs are neither available nor necessarily running yet
+            Outcome outcome = outcomes.computeIfAbsent(DemandForecast.key(cloud, template), k -> new Outcome());
+            int inFlight = outcome.inFlight.get();
+            int permitted = cap - runningNodes - inFlight;
+            int desired = min - available - inFlight;
             int toProvision = Math.min(desired, permitted);
+            // Probe failing template with a single instance, not to waste the capacity
+            if (outcome.failures.get() > 0) {
+                toProvision = Math.min(toProvision, 1);
+            }
             if (toProvision > 0) {
                 LOGGER.log(Level.INFO, "Pre-creating " + toProvision + " instance(s) for template " + template.getName() + " in cloud " + cloud.name);
                 for (int i = 0; i < toProvision; i++) {
-                    try {
-                        cloud.provisionSlaveExplicitly(template);
-                    } catch (Throwable ex) {
-                        LOGGER.log(Level.SEVERE, "Failed to pre-create instance from template " + template.getName(), ex);
-                    }
+                    outcome.inFlight.incrementAndGet();
+                    futures.add(EXECUTOR.submit(() -> preCreate(cloud, template, outcome, auth)));
                 }
             }
         }
+
+        // Wait for the instances to be created, but not past the deadline not to delay the next run
+        long end = System.currentTimeMillis() + deadline;
+        int pending = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(end - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                pending++;
+            } catch (ExecutionException ex) {
+                throw new AssertionError(ex); // Failures handled by the task
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (pending > 0) {
+            LOGGER.log(Level.INFO, pending + " instance(s) still pre-creating after " + deadline + "ms");
+        }
+    }
+
+    private static synchronized void resize(int size) {
+        // Core size can not exceed the maximum at any point
+        if (size > EXECUTOR.getMaximumPoolSize()) {
+            EXECUTOR.setMaximumPoolSize(size);
+            EXECUTOR.setCorePoolSize(size);
+        } else {
+            EXECUTOR.setCorePoolSize(size);
+            EXECUTOR.setMaximumPoolSize(size);
+        }
+    }
+
+    private static void preCreate(
+            @Nonnull JCloudsCloud cloud, @Nonnull JCloudsSlaveTemplate template, @Nonnull Outcome outcome, @Nonnull Authentication auth
+    ) {
+        try (ACLContext ignored = ACL.as2(auth)) {
+            cloud.provisionSlaveExplicitly(template);
+            outcome.failures.set(0);
+        } catch (Throwable ex) {
+            int failures = outcome.failures.incrementAndGet();
+            LOGGER.log(Level.SEVERE, "Failed to pre-create instance from template " + template.getName() + " (" + failures + " failure(s) in a row)", ex);
+        } finally {
+            outcome.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Pre-creation of a template.
+     */
+    private static final class Outcome {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
     }
 
     /**
@@ -102,12 +222,15 @@ public final class JCloudsPreCreationThread extends AsyncPeriodicWork {
         JCloudsSlave node = computer.getNode();
         if (node == null) return false;
 
-        Integer instancesMin = node.getSlaveOptions().getInstancesMin();
-        if (instancesMin > 0) {
+        SlaveOptions opts = node.getSlaveOptions();
+        Integer queueWaitTarget = opts.getQueueWaitTarget();
+        if (opts.getInstancesMin() > 0 || DemandForecast.enabled || (queueWaitTarget != null && queueWaitTarget > 0)) {
             JCloudsCloud cloud = JCloudsCloud.getByName(computer.getId().getCloudName());
             String templateName = computer.getId().getTemplateName();
             JCloudsSlaveTemplate template = cloud.getTemplate(templateName);
             if (template != null) {
+                int instancesMin = getInstancesMin(cloud, template);
+                if (instancesMin == 0) return false;
                 int readyNodes = template.getAvailableNodesTotal();
                 return readyNodes <= instancesMin;
             }
@@ -115,6 +238,19 @@ public final class JCloudsPreCreationThread extends AsyncPeriodicWork {
         return false;
     }
 
+    /**
+     * Effective minimal number of ready instances of the template.
+     *
+     * The configured instancesMin raised by the demand forecast and the warm pool of the queue wait target, if any.
+     */
+    /*package*/ static int getInstancesMin(@Nonnull JCloudsCloud cloud, @Nonnull JCloudsSlaveTemplate template) {
+        int min = DemandForecast.getInstancesMin(cloud, template);
+        int warmPool = QueueWaitController.get().getWarmPool(DemandForecast.key(cloud, template));
+        if (warmPool == 0) return min;
+
+        return Math.max(min, Math.min(min + warmPool, template.getEffectiveSlaveOptions().getInstanceCap()));
+    }
+
     @Override protected Level getNormalLoggingLevel() { return Level.FINE; }
     @Override protected Level getSlowLoggingLevel() { return Level.INFO; }
 }
@@ -485,7 +485,7 @@ public class JCloudsSlaveTemplate implements Describable<JCloudsSlaveTemplate>,
 
     /*package for testing*/ List<? extends Server> getRunningNodes() {
         List<Server> tmplt = new ArrayList<>();
-        for (Server server : cloud.getOpenstack().getRunningNodes()) {
+        for (Server server : cloud.getOpenstack().getRunningNodes(JCloudsCloud.inventoryStaleness)) {
             if (hasProvisioned(server)) {
                 tmplt.add(server);
             }
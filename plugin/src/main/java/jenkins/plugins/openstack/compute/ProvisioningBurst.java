@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of machines of a template to provision in a single {@link JCloudsCloud#provision} call.
+ *
+ * Starts where the former hard limit was and adapts to how provisioning goes: every node that gets connected grows the
+ * burst by one, so it doubles once the whole burst succeeds, and every failure halves it. Slow boots grow the burst
+ * slowly as the successes arrive late.
+ *
+ * A warm pool requested by {@link QueueWaitController} raises the burst, unless the template failed within
+ * {@link #failurePeriod} so the backoff is not overridden.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class ProvisioningBurst {
+
+    /*package*/ static int initialSize = Integer.getInteger(ProvisioningBurst.class.getName() + ".initialSize", 10);
+    /*package*/ static int maxSize = Integer.getInteger(ProvisioningBurst.class.getName() + ".maxSize", 200);
+    /*package*/ static long failurePeriod = Long.getLong(ProvisioningBurst.class.getName() + ".failurePeriod", TimeUnit.MINUTES.toMillis(10));
+
+    @GuardedBy("this")
+    private final Map<String, Integer> sizes = new HashMap<>();
+    @GuardedBy("this")
+    private final Map<String, Long> failures = new HashMap<>();
+
+    /**
+     * Number of machines of the template that can be provisioned at once.
+     */
+    /*package*/ synchronized @Nonnegative int getSize(@Nonnull String template) {
+        return sizes.getOrDefault(template, clamp(initialSize));
+    }
+
+    /**
+     * Number of machines of the template that can be provisioned at once to fill the warm pool.
+     *
+     * @param warmPool Number of machines to keep ready.
+     */
+    /*package*/ synchronized @Nonnegative int getSize(@Nonnull String template, @Nonnegative int warmPool) {
+        int size = getSize(template);
+        Long failedAt = failures.get(template);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < failurePeriod) return size;
+
+        return Math.max(size, warmPool);
+    }
+
+    /*package*/ synchronized void succeeded(@Nonnull String template) {
+        sizes.put(template, clamp(getSize(template) + 1));
+    }
+
+    /*package*/ synchronized void failed(@Nonnull String template) {
+        sizes.put(template, clamp(getSize(template) / 2));
+        failures.put(template, System.currentTimeMillis());
+    }
+
+    private static int clamp(int size) {
+        return Math.max(1, Math.min(size, maxSize));
+    }
+}
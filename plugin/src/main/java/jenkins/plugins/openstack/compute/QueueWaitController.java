@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size the warm pool and the provisioning burst of templates to keep the queue wait under the configured target.
+ *
+ * The time builds spend in the queue is recorded for the template that would be provisioned for their label. Once per
+ * {@link JCloudsPreCreationThread} run, the 90th percentile of the waits observed within {@link #window} is compared with
+ * the {@link SlaveOptions#getQueueWaitTarget()} of the template and a PID controller computes the number of machines to
+ * keep ready on top of instancesMin. The error is relative to the target, so the same gains fit all the templates. No
+ * builds waiting counts as no wait at all, shrinking the pool gradually. The pool never exceeds instanceCap.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class QueueWaitController extends QueueListener {
+
+    /*package*/ static long window = Long.getLong(QueueWaitController.class.getName() + ".window", TimeUnit.MINUTES.toMillis(15));
+    /*package*/ static double proportionalGain = Double.parseDouble(System.getProperty(QueueWaitController.class.getName() + ".proportionalGain", "2"));
+    /*package*/ static double integralGain = Double.parseDouble(System.getProperty(QueueWaitController.class.getName() + ".integralGain", "1"));
+    /*package*/ static double derivativeGain = Double.parseDouble(System.getProperty(QueueWaitController.class.getName() + ".derivativeGain", "0"));
+
+    private static final double PERCENTILE = 0.9;
+
+    @GuardedBy("this")
+    private final Map<String, Loop> loops = new HashMap<>();
+
+    /*package*/ static @Nonnull QueueWaitController get() {
+        return ExtensionList.lookupSingleton(QueueWaitController.class);
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        if (li.isCancelled()) return;
+
+        Label label = li.getAssignedLabel();
+        if (label == null) return; // Not waiting for any template in particular
+
+        String key = DemandForecast.findTemplate(label);
+        if (key != null) {
+            long now = System.currentTimeMillis();
+            record(key, now, now - li.getInQueueSince());
+        }
+    }
+
+    /*package*/ synchronized void record(@Nonnull String key, long time, long wait) {
+        loops.computeIfAbsent(key, k -> new Loop()).waits.add(new long[] {time, wait});
+    }
+
+    /**
+     * Recompute the warm pool of all templates with target configured.
+     */
+    /*package*/ void update() {
+        Map<String, Integer> targets = new HashMap<>();
+        Map<String, Integer> caps = new HashMap<>();
+        for (JCloudsCloud cloud : JCloudsCloud.getClouds()) {
+            for (JCloudsSlaveTemplate template : cloud.getTemplates()) {
+                SlaveOptions opts = template.getEffectiveSlaveOptions();
+                Integer target = opts.getQueueWaitTarget();
+                if (target != null && target > 0) {
+                    String key = DemandForecast.key(cloud, template);
+                    targets.put(key, target);
+                    caps.put(key, opts.getInstanceCap());
+                }
+            }
+        }
+        update(targets, caps, System.currentTimeMillis());
+    }
+
+    /**
+     * @param targets Target wait in seconds, indexed by template.
+     * @param caps Instance cap, indexed by template.
+     */
+    /*package*/ synchronized void update(@Nonnull Map<String, Integer> targets, @Nonnull Map<String, Integer> caps, long now) {
+        loops.keySet().retainAll(targets.keySet());
+        for (Map.Entry<String, Integer> entry : targets.entrySet()) {
+            Loop loop = loops.computeIfAbsent(entry.getKey(), k -> new Loop());
+            loop.update(TimeUnit.SECONDS.toMillis(entry.getValue()), caps.getOrDefault(entry.getKey(), 0), now);
+        }
+    }
+
+    /**
+     * Number of machines of the template to keep ready on top of instancesMin.
+     */
+    /*package*/ synchronized @Nonnegative int getWarmPool(@Nonnull String key) {
+        Loop loop = loops.get(key);
+        return loop == null ? 0 : loop.warmPool;
+    }
+
+    private static final class Loop {
+        private final Deque<long[]> waits = new ArrayDeque<>();
+        private double integral;
+        private double lastError;
+        private int warmPool;
+
+        private void update(long target, int cap, long now) {
+            while (!waits.isEmpty() && waits.peekFirst()[0] < now - window) {
+                waits.removeFirst();
+            }
+
+            double error = (percentile() - target) / (double) target;
+            integral = Math.max(0, Math.min(integral + integralGain * error, cap));
+            double output = proportionalGain * error + integral + derivativeGain * (error - lastError);
+            lastError = error;
+
+            warmPool = (int) Math.max(0, Math.min(Math.round(output), cap));
+        }
+
+        private long percentile() {
+            if (waits.isEmpty()) return 0;
+
+            List<Long> sorted = new ArrayList<>(waits.size());
+            for (long[] wait : waits) {
+                sorted.add(wait[1]);
+            }
+            Collections.sort(sorted);
+            return sorted.get((int) Math.ceil(PERCENTILE * sorted.size()) - 1);
+        }
+    }
+}
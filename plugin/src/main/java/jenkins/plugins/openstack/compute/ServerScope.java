@@ -26,7 +26,6 @@ package jenkins.plugins.openstack.compute;
 import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.Jenkins;
-import org.jenkinsci.plugins.cloudstats.CloudStatistics;
 import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -185,21 +184,20 @@ public abstract class ServerScope {
 
             if (cloudStatsFingerprint != null) {
                 // The node may be provisioned or deleted at the moment - do not interfere
-                for (ProvisioningActivity pa : CloudStatistics.get().getActivities()) {
-                    // Note the node name might not have been assigned yet so using fingerprint instead
-                    if (pa.getId().getFingerprint() == cloudStatsFingerprint) {
-                        switch (pa.getCurrentPhase()) {
-                            case PROVISIONING:
-                                return false; // Node not yet created
-                            case LAUNCHING:
-                            case OPERATING:
-                                LOGGER.warning("Node does not exist for " + pa.getCurrentPhase() + " " + specifier);
-                                return false;
-                            case COMPLETED:
-                                return true;
-                        }
-                        assert false: "Unreachable";
+                // Note the node name might not have been assigned yet so using fingerprint instead
+                ProvisioningActivity pa = ActivityIndex.get().getActivity(cloudStatsFingerprint);
+                if (pa != null) {
+                    switch (pa.getCurrentPhase()) {
+                        case PROVISIONING:
+                            return false; // Node not yet created
+                        case LAUNCHING:
+                        case OPERATING:
+                            LOGGER.warning("Node does not exist for " + pa.getCurrentPhase() + " " + specifier);
+                            return false;
+                        case COMPLETED:
+                            return true;
                     }
+                    assert false: "Unreachable";
                 }
             }
 
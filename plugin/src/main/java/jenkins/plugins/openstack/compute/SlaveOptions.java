@@ -54,7 +54,7 @@ import java.util.Objects;
  */
 public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
     private static final long serialVersionUID = -1L;
-    private static final SlaveOptions EMPTY = new SlaveOptions(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    private static final SlaveOptions EMPTY = new SlaveOptions(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
 
     // Provisioning attributes
     private /*final*/ @CheckForNull BootSource bootSource;
@@ -87,6 +87,9 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
 
     private final @CheckForNull Boolean configDrive;
 
+    // Seconds, p90 of the queue wait to maintain
+    private final @CheckForNull Integer queueWaitTarget;
+
     // Replaced by BootSource
     @Deprecated @SuppressWarnings("DeprecatedIsStillUsed") private transient @CheckForNull String imageId;
 
@@ -160,6 +163,10 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
 
     public @CheckForNull Boolean getConfigDrive() { return configDrive; }
 
+    public @CheckForNull Integer getQueueWaitTarget() {
+        return queueWaitTarget;
+    }
+
     public SlaveOptions(Builder b) {
         this(
                 b.bootSource,
@@ -179,7 +186,8 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
                 b.launcherFactory,
                 b.nodeProperties,
                 b.retentionTime,
-                b.configDrive
+                b.configDrive,
+                b.queueWaitTarget
         );
     }
 
@@ -202,7 +210,8 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
             LauncherFactory launcherFactory,
             @CheckForNull List<? extends NodeProperty<?>> nodeProperties,
             Integer retentionTime,
-            @CheckForNull Boolean configDrive
+            @CheckForNull Boolean configDrive,
+            @CheckForNull Integer queueWaitTarget
     ) {
         this.bootSource = bootSource;
         this.hardwareId = Util.fixEmpty(hardwareId);
@@ -226,6 +235,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
         }
         this.retentionTime = retentionTime;
         this.configDrive = configDrive;
+        this.queueWaitTarget = queueWaitTarget;
     }
 
     private Object readResolve() {
@@ -259,6 +269,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
                 .nodeProperties(_override(this.nodeProperties, o.nodeProperties))
                 .retentionTime(_override(this.retentionTime, o.retentionTime))
                 .configDrive(_override(this.configDrive, o.configDrive))
+                .queueWaitTarget(_override(this.queueWaitTarget, o.queueWaitTarget))
                 .build()
         ;
     }
@@ -290,6 +301,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
                 .nodeProperties(_erase(this.nodeProperties, defaults.nodeProperties))
                 .retentionTime(_erase(this.retentionTime, defaults.retentionTime))
                 .configDrive(_erase(this.configDrive, defaults.configDrive))
+                .queueWaitTarget(_erase(this.queueWaitTarget, defaults.queueWaitTarget))
                 .build()
         ;
     }
@@ -322,6 +334,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
                 .append("nodeProperties", nodeProperties)
                 .append("retentionTime", retentionTime)
                 .append("configDrive", configDrive)
+                .append("queueWaitTarget", queueWaitTarget)
                 .toString()
         ;
     }
@@ -350,7 +363,8 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
         if (!Objects.equals(launcherFactory, that.launcherFactory)) return false;
         if (!Objects.equals(nodeProperties, that.nodeProperties)) return false;
         if (!Objects.equals(retentionTime, that.retentionTime)) return false;
-        return Objects.equals(configDrive, that.configDrive);
+        if (!Objects.equals(configDrive, that.configDrive)) return false;
+        return Objects.equals(queueWaitTarget, that.queueWaitTarget);
     }
 
     @Override
@@ -373,6 +387,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
         result = 31 * result + (nodeProperties != null ? nodeProperties.hashCode() : 0);
         result = 31 * result + (retentionTime != null ? retentionTime.hashCode() : 0);
         result = 31 * result + (configDrive != null ? configDrive.hashCode() : 0);
+        result = 31 * result + (queueWaitTarget != null ? queueWaitTarget.hashCode() : 0);
         return result;
     }
 
@@ -399,6 +414,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
                 .nodeProperties(nodeProperties)
                 .retentionTime(retentionTime)
                 .configDrive(configDrive)
+                .queueWaitTarget(queueWaitTarget)
         ;
     }
 
@@ -434,6 +450,7 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
         private @CheckForNull List<? extends NodeProperty<?>> nodeProperties;
         private @CheckForNull Integer retentionTime;
         private @CheckForNull Boolean configDrive;
+        private @CheckForNull Integer queueWaitTarget;
 
         public Builder() {}
 
@@ -530,6 +547,11 @@ public class SlaveOptions implements Describable<SlaveOptions>, Serializable {
             this.configDrive = configDrive;
             return this;
         }
+
+        public @Nonnull Builder queueWaitTarget(Integer queueWaitTarget) {
+            this.queueWaitTarget = queueWaitTarget;
+            return this;
+        }
     }
 
     /**
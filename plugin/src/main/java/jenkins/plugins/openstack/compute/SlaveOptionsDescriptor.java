@@ -113,6 +113,21 @@ public final class SlaveOptionsDescriptor extends OsAuthDescriptor<SlaveOptions>
         return FormValidation.validateNonNegativeInteger(value);
     }
 
+    @Restricted(DoNotUse.class)
+    @RequirePOST
+    public FormValidation doCheckQueueWaitTarget(
+            @QueryParameter String value,
+            @RelativePath("../../slaveOptions") @QueryParameter("queueWaitTarget") String def
+    ) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        if (Util.fixEmpty(value) == null) {
+            String d = getDefault(def, opts().getQueueWaitTarget());
+            if (d != null) return FormValidation.ok(def(d));
+            return OK; // Not required
+        }
+        return FormValidation.validatePositiveInteger(value);
+    }
+
     @Restricted(DoNotUse.class)
     @RequirePOST
     public FormValidation doCheckStartTimeout(
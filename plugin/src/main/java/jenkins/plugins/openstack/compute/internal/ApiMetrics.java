@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency, outcome and retry statistics of OpenStack API calls, per operation.
+ *
+ * Operations are named by service, resource and action, like <code>nova.servers.list</code>. The outcome is the HTTP
+ * status code when known, <code>ok</code> for successful calls that do not report it and <code>error</code> for failures
+ * without a response. Statistics are exposed over JMX as <code>jenkins.plugins.openstack:type=ApiMetrics</code> and
+ * passed to all {@link Reporter}s, like the one feeding the metrics plugin when installed.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class ApiMetrics implements ApiMetrics.StatsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(ApiMetrics.class.getName());
+
+    private static final ApiMetrics INSTANCE = new ApiMetrics();
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> retries = new ConcurrentHashMap<>();
+
+    /*package*/ static @Nonnull ApiMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Perform the call recording its duration and outcome.
+     */
+    public static <T> T time(@Nonnull String operation, @Nonnull Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T ret = call.get();
+            outcome = ret instanceof ActionResponse ? String.valueOf(((ActionResponse) ret).getCode()) : "ok";
+            return ret;
+        } catch (ResponseException ex) {
+            outcome = String.valueOf(ex.getStatus());
+            throw ex;
+        } finally {
+            INSTANCE.record(operation, System.nanoTime() - start, outcome);
+        }
+    }
+
+    /**
+     * Perform the call with no result recording its duration and outcome.
+     */
+    public static void run(@Nonnull String operation, @Nonnull Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record the operation is to be attempted again.
+     */
+    public static void retry(@Nonnull String operation) {
+        INSTANCE.retries.computeIfAbsent(operation, o -> new LongAdder()).increment();
+        for (Reporter reporter : reporters()) {
+            reporter.retry(operation);
+        }
+    }
+
+    private void record(@Nonnull String operation, long nanos, @Nonnull String outcome) {
+        operations.computeIfAbsent(operation, o -> new Operation()).record(nanos);
+        outcomes.computeIfAbsent(operation + ":" + outcome, o -> new LongAdder()).increment();
+        for (Reporter reporter : reporters()) {
+            reporter.record(operation, nanos, outcome);
+        }
+    }
+
+    private static @Nonnull Iterable<Reporter> reporters() {
+        // Not available in unit tests
+        if (Jenkins.getInstanceOrNull() == null) return Collections.emptyList();
+        return ExtensionList.lookup(Reporter.class);
+    }
+
+    @Override
+    public @Nonnull Map<String, Long> getCallCounts() {
+        return collect(operations, op -> op.count.sum());
+    }
+
+    @Override
+    public @Nonnull Map<String, Long> getTotalTimesMillis() {
+        return collect(operations, op -> TimeUnit.NANOSECONDS.toMillis(op.totalNanos.sum()));
+    }
+
+    @Override
+    public @Nonnull Map<String, Long> getMaxTimesMillis() {
+        return collect(operations, op -> TimeUnit.NANOSECONDS.toMillis(op.maxNanos.get()));
+    }
+
+    @Override
+    public @Nonnull Map<String, Long> getOutcomeCounts() {
+        return collect(outcomes, LongAdder::sum);
+    }
+
+    @Override
+    public @Nonnull Map<String, Long> getRetryCounts() {
+        return collect(retries, LongAdder::sum);
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        outcomes.clear();
+        retries.clear();
+    }
+
+    private static <T> Map<String, Long> collect(@Nonnull Map<String, T> values, @Nonnull Function<T, Long> value) {
+        Map<String, Long> ret = new TreeMap<>();
+        values.forEach((key, v) -> ret.put(key, value.apply(v)));
+        return ret;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("jenkins.plugins.openstack:type=ApiMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, "Unable to register OpenStack API metrics MBean", ex);
+        }
+    }
+
+    private static final class Operation {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * OpenStack API statistics exposed over JMX, indexed by operation.
+     */
+    public interface StatsMXBean {
+        Map<String, Long> getCallCounts();
+        Map<String, Long> getTotalTimesMillis();
+        Map<String, Long> getMaxTimesMillis();
+
+        /**
+         * Indexed by operation and outcome separated by colon.
+         */
+        Map<String, Long> getOutcomeCounts();
+        Map<String, Long> getRetryCounts();
+        void reset();
+    }
+
+    /**
+     * Receive the statistics as they are recorded, to feed them to other metrics surface.
+     */
+    public static abstract class Reporter implements ExtensionPoint {
+        public abstract void record(@Nonnull String operation, long nanos, @Nonnull String outcome);
+
+        public void retry(@Nonnull String operation) {}
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.compute.Server;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Wait for servers being booted to leave the BUILD state.
+ *
+ * The state of all servers waited for is fetched by single <code>changes-since</code> query per tick, so the number of
+ * requests does not grow with the number of servers booted concurrently and no thread is blocked waiting. The interval
+ * between ticks starts short and grows while nothing changes, as servers typically take tens of seconds to boot.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class BootPoller {
+    private static final Logger LOGGER = Logger.getLogger(BootPoller.class.getName());
+
+    /*package*/ static long minInterval = Long.getLong(BootPoller.class.getName() + ".minInterval", 1000);
+    /*package*/ static long maxInterval = Long.getLong(BootPoller.class.getName() + ".maxInterval", 8000);
+
+    private final @Nonnull Function<String, List<? extends Server>> changesLister;
+    private final @Nonnull Function<String, Server> getter;
+    private final @Nonnull ScheduledExecutorService executor;
+
+    @GuardedBy("this")
+    private final Map<String, Watch> watches = new HashMap<>();
+    @GuardedBy("this")
+    private boolean scheduled;
+    @GuardedBy("this")
+    private long interval = minInterval;
+    // Start of the last tick that succeeded to fetch the changes
+    @GuardedBy("this")
+    private long lastSeen;
+
+    /**
+     * @param changesLister List servers (in detail) changed since given ISO 8601 time, including the deleted ones.
+     * @param getter Get server by id, null if it does not exist.
+     */
+    /*package*/ BootPoller(@Nonnull Function<String, List<? extends Server>> changesLister, @Nonnull Function<String, Server> getter) {
+        this(changesLister, getter, Timer.get());
+    }
+
+    /*package*/ BootPoller(
+            @Nonnull Function<String, List<? extends Server>> changesLister,
+            @Nonnull Function<String, Server> getter,
+            @Nonnull ScheduledExecutorService executor
+    ) {
+        this.changesLister = changesLister;
+        this.getter = getter;
+        this.executor = executor;
+    }
+
+    /**
+     * Wait for server to leave BUILD state.
+     *
+     * @param serverId Server booted.
+     * @param timeout Time in milliseconds to wait for.
+     * @return Future completed with the server once out of BUILD state or after the timeout, whatever comes first. Null in
+     * case the server does not exist when timed out.
+     */
+    public @Nonnull CompletableFuture<Server> watch(@Nonnull String serverId, @Nonnegative long timeout) {
+        long now = System.currentTimeMillis();
+        Watch watch = new Watch(now + timeout);
+        synchronized (this) {
+            if (watches.isEmpty()) {
+                lastSeen = now;
+            }
+            watches.put(serverId, watch);
+            interval = minInterval; // New server will need the attention soon
+            schedule();
+        }
+        return watch.future;
+    }
+
+    @GuardedBy("this")
+    private void schedule() {
+        if (scheduled || watches.isEmpty()) return;
+
+        scheduled = true;
+        executor.schedule(this::tick, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        boolean changed = false;
+        try {
+            changed = poll();
+        } finally {
+            synchronized (this) {
+                scheduled = false;
+                interval = changed ? minInterval : Math.min(interval * 2, maxInterval);
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * @return true if some server have changed state.
+     */
+    private boolean poll() {
+        final long started = System.currentTimeMillis();
+        final String since;
+        synchronized (this) {
+            since = Instant.ofEpochMilli(lastSeen - ServerInventory.deltaOverlap).truncatedTo(ChronoUnit.SECONDS).toString();
+        }
+
+        boolean changed = false;
+        try {
+            List<? extends Server> changes = changesLister.apply(since);
+            synchronized (this) {
+                lastSeen = started;
+                for (Server server : changes) {
+                    Watch watch = watches.get(server.getId());
+                    if (watch == null) continue;
+
+                    watch.last = server;
+                    if (server.getStatus() != Server.Status.BUILD) {
+                        watches.remove(server.getId());
+                        watch.future.complete(server);
+                        changed = true;
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to poll status of servers being booted", ex);
+        }
+
+        for (Map.Entry<String, Watch> timedOut : removeTimedOut(started).entrySet()) {
+            Watch watch = timedOut.getValue();
+            Server last = watch.last;
+            if (last == null) {
+                // Never seen, find out if it exists at all
+                try {
+                    last = getter.apply(timedOut.getKey());
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to get server " + timedOut.getKey(), ex);
+                }
+            }
+            watch.future.complete(last);
+        }
+        return changed;
+    }
+
+    private synchronized @Nonnull Map<String, Watch> removeTimedOut(long now) {
+        Map<String, Watch> timedOut = new HashMap<>();
+        for (Map.Entry<String, Watch> entry : new ArrayList<>(watches.entrySet())) {
+            if (entry.getValue().deadline <= now) {
+                timedOut.put(entry.getKey(), entry.getValue());
+                watches.remove(entry.getKey());
+            }
+        }
+        return timedOut;
+    }
+
+    private static final class Watch {
+        private final @Nonnull CompletableFuture<Server> future = new CompletableFuture<>();
+        private final long deadline;
+        private volatile @CheckForNull Server last;
+
+        private Watch(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stop calling OpenStack that is failing, so callers do not wait for timeouts over and over.
+ *
+ * The breaker opens once the ratio of failed calls among those made recently exceeds the threshold. Calls are rejected
+ * right away while open. After a while, single trial call is let through (half-open) to close the breaker when it
+ * succeeds, or to keep it open for another period otherwise. Only failures suggesting OpenStack is unavailable count,
+ * that is connection failures and server errors, thrown or reported in the action response.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class CircuitBreaker {
+
+    /*package*/ static long window = Long.getLong(CircuitBreaker.class.getName() + ".window", TimeUnit.MINUTES.toMillis(1));
+    /*package*/ static int minCalls = Integer.getInteger(CircuitBreaker.class.getName() + ".minCalls", 10);
+    /*package*/ static int failureRatePercent = Integer.getInteger(CircuitBreaker.class.getName() + ".failureRatePercent", 50);
+    /*package*/ static long openPeriod = Long.getLong(CircuitBreaker.class.getName() + ".openPeriod", TimeUnit.SECONDS.toMillis(30));
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @GuardedBy("this")
+    private @Nonnull State state = State.CLOSED;
+    @GuardedBy("this")
+    private long openedAt;
+    @GuardedBy("this")
+    private boolean trialInProgress;
+    // Time of the call, negative for failures
+    @GuardedBy("this")
+    private final Deque<Long> outcomes = new ArrayDeque<>();
+
+    /*package*/ static boolean isFailure(@Nonnull ResponseException ex) {
+        // Connection failures are reported with no status
+        return ex.getStatus() == 0 || ex.getStatus() >= 500;
+    }
+
+    /*package*/ static boolean isFailure(@Nonnull ActionResponse res) {
+        return !res.isSuccess() && res.getCode() >= 500;
+    }
+
+    /**
+     * Permit the call or throw.
+     *
+     * @return true if the call is a trial made in half-open state.
+     * @throws Openstack.ActionFailed When open.
+     */
+    /*package*/ synchronized boolean permit() throws Openstack.ActionFailed {
+        switch (getState()) {
+            case CLOSED: return false;
+            case HALF_OPEN:
+                if (!trialInProgress) {
+                    trialInProgress = true;
+                    return true;
+                }
+                // fall through
+            default:
+                long remaining = Math.max(openedAt + openPeriod - System.currentTimeMillis(), 0);
+                throw new Openstack.ActionFailed("OpenStack is unavailable, calls are suspended for " + remaining / 1000 + "s");
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     *
+     * @param trial The value returned by {@link #permit()} for the call.
+     */
+    /*package*/ synchronized void record(boolean trial, boolean failed) {
+        long now = System.currentTimeMillis();
+        if (trial) {
+            trialInProgress = false;
+            if (failed) {
+                openedAt = now;
+            } else {
+                state = State.CLOSED;
+                outcomes.clear();
+            }
+            return;
+        }
+        if (state == State.OPEN) return; // Made before the breaker opened
+
+        outcomes.addLast(failed ? -now : now);
+        while (!outcomes.isEmpty() && Math.abs(outcomes.peekFirst()) < now - window) {
+            outcomes.removeFirst();
+        }
+
+        if (failed && outcomes.size() >= minCalls) {
+            long failures = outcomes.stream().filter(time -> time < 0).count();
+            if (failures * 100 >= (long) failureRatePercent * outcomes.size()) {
+                state = State.OPEN;
+                openedAt = now;
+                outcomes.clear();
+            }
+        }
+    }
+
+    public synchronized @Nonnull State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openPeriod) return State.HALF_OPEN;
+        return state;
+    }
+
+    /**
+     * Calls are being rejected.
+     */
+    public boolean isOpen() {
+        return getState() == State.OPEN;
+    }
+}
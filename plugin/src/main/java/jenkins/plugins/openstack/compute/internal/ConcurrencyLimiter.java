@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limit the number of concurrent requests sent to single OpenStack.
+ *
+ * The limit adapts to the cloud responses (additive increase, multiplicative decrease): it grows by one for every
+ * limit-worth of successful calls and shrinks when OpenStack asks to slow down (429, 503) or when the call takes much
+ * longer than usual for its operation. Calls releasing resources, and all calls made from {@link #prioritized(Runnable)},
+ * are admitted before the others and can exceed the limit slightly, so they are not starved by provisioning.
+ *
+ * Calls of the same operation name are expected to have comparable latency. Requests that differ a lot, like the full
+ * server listing and the <code>changes-since</code> one, are to be named apart so the fast ones do not make the slow
+ * ones look like overload.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class ConcurrencyLimiter {
+
+    /*package*/ static int initialLimit = Integer.getInteger(ConcurrencyLimiter.class.getName() + ".initialLimit", 20);
+    /*package*/ static int minLimit = Integer.getInteger(ConcurrencyLimiter.class.getName() + ".minLimit", 2);
+    /*package*/ static int maxLimit = Integer.getInteger(ConcurrencyLimiter.class.getName() + ".maxLimit", 200);
+    /*package*/ static int priorityReserve = Integer.getInteger(ConcurrencyLimiter.class.getName() + ".priorityReserve", 4);
+    /*package*/ static long acquireTimeout = Long.getLong(ConcurrencyLimiter.class.getName() + ".acquireTimeout", TimeUnit.MINUTES.toMillis(5));
+
+    private static final double DECREASE_RATIO = 0.7;
+    // Calls taking this many times the usual latency of the operation signal overload
+    private static final double LATENCY_TOLERANCE = 3;
+    // Faster calls are never considered slow, not to react to noise
+    private static final long LATENCY_FLOOR = TimeUnit.SECONDS.toNanos(1);
+    private static final long DECREASE_PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ThreadLocal<Boolean> PRIORITIZED = new ThreadLocal<>();
+
+    @GuardedBy("this")
+    private double limit = initialLimit;
+    @GuardedBy("this")
+    private int inFlight;
+    @GuardedBy("this")
+    private int priorityWaiting;
+    @GuardedBy("this")
+    private long lastDecrease = System.nanoTime() - DECREASE_PERIOD;
+    @GuardedBy("this")
+    private final Map<String, Double> latencies = new HashMap<>();
+
+    /**
+     * Run the task with all OpenStack calls it makes from current thread prioritized.
+     */
+    public static void prioritized(@Nonnull Runnable task) {
+        Boolean outer = PRIORITIZED.get();
+        PRIORITIZED.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            if (outer == null) {
+                PRIORITIZED.remove();
+            }
+        }
+    }
+
+    /*package*/ static boolean isPriority(@Nonnull String operation) {
+        return PRIORITIZED.get() != null || operation.endsWith(".delete");
+    }
+
+    /**
+     * Perform the call once there is capacity for it.
+     */
+    public <T> T call(@Nonnull String operation, @Nonnull Supplier<T> call) {
+        boolean priority = isPriority(operation);
+        acquire(priority);
+
+        long start = System.nanoTime();
+        int status = 0;
+        boolean completed = false;
+        try {
+            T ret = ApiMetrics.time(operation, call);
+            if (ret instanceof ActionResponse) {
+                status = ((ActionResponse) ret).getCode();
+            }
+            completed = true;
+            return ret;
+        } catch (ResponseException ex) {
+            status = ex.getStatus();
+            throw ex;
+        } finally {
+            release(operation, completed, status, System.nanoTime() - start);
+        }
+    }
+
+    private synchronized void acquire(boolean priority) {
+        long deadline = System.currentTimeMillis() + acquireTimeout;
+        if (priority) priorityWaiting++;
+        try {
+            while (!admits(priority)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) throw new Openstack.ActionFailed("Timed out waiting for capacity to call OpenStack");
+                wait(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // Reset interrupt flag
+            throw new Openstack.ActionFailed("Interrupted", ex);
+        } finally {
+            if (priority) priorityWaiting--;
+        }
+    }
+
+    @GuardedBy("this")
+    private boolean admits(boolean priority) {
+        if (priority) return inFlight < (int) limit + priorityReserve;
+        return priorityWaiting == 0 && inFlight < (int) limit;
+    }
+
+    private synchronized void release(@Nonnull String operation, boolean completed, int status, long nanos) {
+        inFlight--;
+
+        Double usual = latencies.get(operation);
+        boolean slow = usual != null && nanos > LATENCY_FLOOR && nanos > usual * LATENCY_TOLERANCE;
+        // Moving average does not follow the outliers not to get used to overload
+        latencies.put(operation, usual == null ? nanos : slow ? usual : usual * 0.9 + nanos * 0.1);
+
+        if (status == 429 || status == 503 || slow) {
+            long now = System.nanoTime();
+            // Calls in flight are likely to report the same, react once
+            if (now - lastDecrease >= DECREASE_PERIOD) {
+                lastDecrease = now;
+                limit = Math.max(minLimit, limit * DECREASE_RATIO);
+            }
+        } else if (completed && status < 400) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
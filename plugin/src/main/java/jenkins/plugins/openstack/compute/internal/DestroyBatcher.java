@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Destroy servers in batches.
+ *
+ * Servers destroyed at about the same time (typically single-use agents finishing together) are collected over a short
+ * window, and the floating IPs associated with them are looked up by a single query for the whole batch. The window is
+ * skipped when no other destruction is in progress, so a lone server is not delayed. The thread
+ * that started the batch performs the lookup while the others wait for it. The deletion itself is done by every caller
+ * for its server, so the outcome is reported per server, while the number of concurrent deletions is limited.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class DestroyBatcher {
+
+    /*package*/ static long window = Long.getLong(DestroyBatcher.class.getName() + ".window", 200);
+    /*package*/ static int parallelism = Integer.getInteger(DestroyBatcher.class.getName() + ".parallelism", 10);
+
+    private final @Nonnull Function<Set<String>, Map<String, List<String>>> fipLookup;
+    private final @Nonnull Semaphore permits = new Semaphore(Math.max(parallelism, 1));
+    private final @Nonnull AtomicInteger inProgress = new AtomicInteger();
+
+    @GuardedBy("this")
+    private Map<String, CompletableFuture<List<String>>> pending = new HashMap<>();
+
+    /**
+     * @param fipLookup Get ids of floating IPs associated with the servers, indexed by server id.
+     */
+    /*package*/ DestroyBatcher(@Nonnull Function<Set<String>, Map<String, List<String>>> fipLookup) {
+        this.fipLookup = fipLookup;
+    }
+
+    /**
+     * Destroy server once the floating IPs of its batch are known.
+     *
+     * @param serverId Server to destroy.
+     * @param destroyer Delete the server and the ids of floating IPs passed.
+     */
+    public void destroy(@Nonnull String serverId, @Nonnull Consumer<List<String>> destroyer) throws Openstack.ActionFailed {
+        inProgress.incrementAndGet();
+        try {
+            List<String> fips = lookup(serverId);
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt(); // Reset interrupt flag
+                throw new Openstack.ActionFailed("Interrupted", ex);
+            }
+            try {
+                destroyer.accept(fips);
+            } finally {
+                permits.release();
+            }
+        } finally {
+            inProgress.decrementAndGet();
+        }
+    }
+
+    private @Nonnull List<String> lookup(@Nonnull String serverId) {
+        CompletableFuture<List<String>> future;
+        boolean leader;
+        synchronized (this) {
+            leader = pending.isEmpty();
+            future = pending.computeIfAbsent(serverId, id -> new CompletableFuture<>());
+        }
+
+        if (leader) {
+            collect();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // Reset interrupt flag
+            throw new Openstack.ActionFailed("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new Openstack.ActionFailed("Unable to list floating IPs of " + serverId, cause);
+        }
+    }
+
+    private void collect() {
+        try {
+            // Others are likely to follow only when destroying several at the time
+            if (window > 0 && inProgress.get() > 1) {
+                Thread.sleep(window);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // Reset interrupt flag, the batch is processed anyway not to leave others waiting
+        }
+
+        Map<String, CompletableFuture<List<String>>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        try {
+            Map<String, List<String>> fips = fipLookup.apply(Collections.unmodifiableSet(batch.keySet()));
+            batch.forEach((id, future) -> future.complete(fips.getOrDefault(id, Collections.emptyList())));
+        } catch (RuntimeException | Error ex) {
+            batch.values().forEach(future -> future.completeExceptionally(ex));
+        }
+    }
+}
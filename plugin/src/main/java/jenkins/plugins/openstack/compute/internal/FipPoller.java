@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.network.NetFloatingIP;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Wait for floating IPs to become usable.
+ *
+ * The IP is ready once Neutron reports it ACTIVE with fixed address populated. The state is checked with exponential
+ * backoff starting at sub-second interval, as most IPs are live in a few seconds. IPs starting to be watched while the
+ * polling is in progress join it at its current interval. When waiting for more IPs at the time, they are all checked
+ * by single listing filtered to their ids.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class FipPoller {
+    private static final Logger LOGGER = Logger.getLogger(FipPoller.class.getName());
+
+    /*package*/ static long minInterval = Long.getLong(FipPoller.class.getName() + ".minInterval", 250);
+    /*package*/ static long maxInterval = Long.getLong(FipPoller.class.getName() + ".maxInterval", 4000);
+
+    private final @Nonnull Function<Collection<String>, List<? extends NetFloatingIP>> lister;
+    private final @Nonnull Function<String, NetFloatingIP> getter;
+    private final @Nonnull ScheduledExecutorService executor;
+
+    @GuardedBy("this")
+    private final Map<String, Watch> watches = new HashMap<>();
+    @GuardedBy("this")
+    private boolean scheduled;
+    @GuardedBy("this")
+    private long interval = minInterval;
+
+    /**
+     * @param lister List floating IPs by ids.
+     * @param getter Get floating IP by id, null if it does not exist.
+     */
+    /*package*/ FipPoller(@Nonnull Function<Collection<String>, List<? extends NetFloatingIP>> lister, @Nonnull Function<String, NetFloatingIP> getter) {
+        this(lister, getter, Timer.get());
+    }
+
+    /*package*/ FipPoller(
+            @Nonnull Function<Collection<String>, List<? extends NetFloatingIP>> lister,
+            @Nonnull Function<String, NetFloatingIP> getter,
+            @Nonnull ScheduledExecutorService executor
+    ) {
+        this.lister = lister;
+        this.getter = getter;
+        this.executor = executor;
+    }
+
+    /*package*/ static boolean isReady(@CheckForNull NetFloatingIP fip) {
+        if (fip == null || fip.getFixedIpAddress() == null) return false;
+
+        // Not all Neutron implementations report status
+        String status = fip.getStatus();
+        return status == null || "ACTIVE".equalsIgnoreCase(status);
+    }
+
+    /**
+     * Wait for IP to become ready.
+     *
+     * @param fipId IP to wait for.
+     * @param timeout Time in milliseconds to wait for.
+     * @return Future completed with the IP once ready, or null after the timeout.
+     */
+    public @Nonnull CompletableFuture<NetFloatingIP> watch(@Nonnull String fipId, @Nonnegative long timeout) {
+        Watch watch = new Watch(System.currentTimeMillis() + timeout);
+        synchronized (this) {
+            watches.put(fipId, watch);
+            if (!scheduled) {
+                interval = minInterval;
+            }
+            schedule();
+        }
+        return watch.future;
+    }
+
+    @GuardedBy("this")
+    private void schedule() {
+        if (scheduled || watches.isEmpty()) return;
+
+        scheduled = true;
+        executor.schedule(this::tick, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            poll();
+        } finally {
+            synchronized (this) {
+                scheduled = false;
+                interval = Math.min(interval * 2, maxInterval);
+                schedule();
+            }
+        }
+    }
+
+    private void poll() {
+        final long started = System.currentTimeMillis();
+        final List<String> ids;
+        synchronized (this) {
+            ids = new ArrayList<>(watches.keySet());
+        }
+        if (ids.isEmpty()) return;
+
+        try {
+            List<? extends NetFloatingIP> fips = ids.size() == 1
+                    ? Collections.singletonList(getter.apply(ids.get(0)))
+                    : lister.apply(ids)
+            ;
+            for (NetFloatingIP fip : fips) {
+                if (!isReady(fip)) continue;
+
+                Watch watch;
+                synchronized (this) {
+                    watch = watches.remove(fip.getId());
+                }
+                if (watch != null) {
+                    watch.future.complete(fip);
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to poll status of floating IPs", ex);
+        }
+
+        List<Watch> timedOut = new ArrayList<>();
+        synchronized (this) {
+            watches.values().removeIf(watch -> {
+                if (watch.deadline > started) return false;
+                timedOut.add(watch);
+                return true;
+            });
+        }
+        for (Watch watch : timedOut) {
+            watch.future.complete(null);
+        }
+    }
+
+    private static final class Watch {
+        private final @Nonnull CompletableFuture<NetFloatingIP> future = new CompletableFuture<>();
+        private final long deadline;
+
+        private Watch(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Floating IPs allocated ahead of time, so provisioning only needs to associate them with the server port.
+ *
+ * Reserved IPs are kept per pool, marked as ours with {@link FipScope#getReserveDescription(String, String, String)}.
+ * The reserve is refilled in the background once it drops below the low watermark, up to the high watermark. IPs in
+ * reserve are not considered leaked by {@link Openstack#getFreeFipIds()}, those no longer needed are released by
+ * {@link #reclaim(Collection)}. Feature is disabled unless the high watermark is configured.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class FipReserve {
+    private static final Logger LOGGER = Logger.getLogger(FipReserve.class.getName());
+
+    /*package*/ static int lowWatermark = Integer.getInteger(FipReserve.class.getName() + ".lowWatermark", 0);
+    /*package*/ static int highWatermark = Integer.getInteger(FipReserve.class.getName() + ".highWatermark", 0);
+
+    // Taken IPs are being associated, do not put them back to reserve until surely done
+    private static final long TAKEN_GRACE_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+    private final @Nonnull Openstack openstack;
+
+    @GuardedBy("this")
+    private final Map<String, Deque<String>> reserves = new HashMap<>();
+    @GuardedBy("this")
+    private final Map<String, Long> taken = new HashMap<>();
+    @GuardedBy("this")
+    private final Set<String> refilling = new HashSet<>();
+
+    /*package*/ FipReserve(@Nonnull Openstack openstack) {
+        this.openstack = openstack;
+    }
+
+    /*package*/ static boolean isEnabled() {
+        return highWatermark > 0;
+    }
+
+    /**
+     * Take reserved IP from the pool.
+     *
+     * @return FIP id or null if there is none reserved.
+     */
+    public @CheckForNull String take(@Nonnull String pool) {
+        if (!isEnabled()) return null;
+
+        String fip;
+        int remaining;
+        synchronized (this) {
+            Deque<String> reserve = reserve(pool);
+            fip = reserve.poll();
+            if (fip != null) {
+                taken.put(fip, System.currentTimeMillis());
+            }
+            remaining = reserve.size();
+        }
+
+        if (remaining < Math.max(lowWatermark, 1)) {
+            refillAsync(pool);
+        }
+        return fip;
+    }
+
+    @GuardedBy("this")
+    private @Nonnull Deque<String> reserve(@Nonnull String pool) {
+        return reserves.computeIfAbsent(pool, p -> new ArrayDeque<>());
+    }
+
+    private void refillAsync(@Nonnull String pool) {
+        synchronized (this) {
+            if (!refilling.add(pool)) return; // In progress already
+        }
+        Timer.get().submit(() -> {
+            try {
+                refill(pool);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to refill floating IP reserve for " + pool, ex);
+            } finally {
+                synchronized (this) {
+                    refilling.remove(pool);
+                }
+            }
+        });
+    }
+
+    private void refill(@Nonnull String pool) {
+        while (true) {
+            synchronized (this) {
+                if (reserve(pool).size() >= highWatermark) return;
+            }
+
+            String fip = openstack.createReserveFip(pool);
+            synchronized (this) {
+                reserve(pool).add(fip);
+            }
+        }
+    }
+
+    /**
+     * Synchronize the reserve with the IPs existing in the cloud and release those that are not needed.
+     *
+     * @param activePools Pools that are still configured to be used.
+     */
+    public void reclaim(@Nonnull Collection<String> activePools) {
+        Map<String, List<String>> existing = openstack.listReserveFips();
+
+        Set<String> toRelease = new HashSet<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            taken.values().removeIf(takenAt -> now - takenAt > TAKEN_GRACE_PERIOD);
+
+            for (Map.Entry<String, List<String>> entry : existing.entrySet()) {
+                String pool = entry.getKey();
+                if (!isEnabled() || !activePools.contains(pool)) {
+                    toRelease.addAll(entry.getValue());
+                    reserves.remove(pool);
+                    continue;
+                }
+
+                // Refill creates IPs the listing might not contain yet
+                if (refilling.contains(pool)) continue;
+
+                // Include IPs reserved before restart or left behind by servers deleted without their IPs
+                Deque<String> reserve = reserve(pool);
+                reserve.retainAll(entry.getValue());
+                for (String fip : entry.getValue()) {
+                    if (!reserve.contains(fip) && !taken.containsKey(fip)) {
+                        reserve.add(fip);
+                    }
+                }
+
+                while (reserve.size() > highWatermark) {
+                    toRelease.add(reserve.removeLast());
+                }
+            }
+
+            // Pools that have no free reserved IPs in the cloud
+            for (Map.Entry<String, Deque<String>> entry : reserves.entrySet()) {
+                if (!existing.containsKey(entry.getKey()) && !refilling.contains(entry.getKey())) {
+                    entry.getValue().clear();
+                }
+            }
+        }
+
+        for (String fip : toRelease) {
+            try {
+                openstack.destroyFip(fip);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to release reserved floating IP " + fip, ex);
+            }
+        }
+
+        if (isEnabled()) {
+            for (String pool : activePools) {
+                synchronized (this) {
+                    Deque<String> reserve = reserves.get(pool);
+                    if (reserve != null && reserve.size() >= Math.max(lowWatermark, 1)) continue;
+                }
+                refillAsync(pool);
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.Objects;
 @Restricted(NoExternalUse.class)
 public class FipScope {
     /*package*/ static final int MAX_DESCRIPTION_LENGTH = 250;
+    private static final String RESERVE_PREFIX = "reserve:";
 
     public static @Nonnull String getDescription(
             @Nonnull String url, @Nonnull String identity, @Nonnull Server server
@@ -56,9 +57,31 @@ public class FipScope {
         ;
     }
 
+    /**
+     * Description of IP allocated ahead of time to be kept in reserve of given pool.
+     */
+    public static @Nonnull String getReserveDescription(
+            @Nonnull String url, @Nonnull String identity, @Nonnull String pool
+    ) {
+        String description = "{ '" + Openstack.FINGERPRINT_KEY_URL + "': '" + url + "', '"
+                + Openstack.FINGERPRINT_KEY_FINGERPRINT + "': '" + identity
+                + "', 'jenkins-scope': '" + RESERVE_PREFIX + pool + "' }"
+        ;
+
+        if (description.length() < MAX_DESCRIPTION_LENGTH) return description;
+
+        return "{ '" + Openstack.FINGERPRINT_KEY_FINGERPRINT + "': '" + identity
+                + "', 'jenkins-scope': '" + RESERVE_PREFIX + pool + "' }"
+        ;
+    }
+
+    /**
+     * @return Server the IP was created for, null if not ours or kept in reserve.
+     */
     public static @CheckForNull String getServerId(@Nonnull String url, @Nonnull String identity, @CheckForNull String description) {
         String scope = getScopeString(url, identity, description);
         if (scope == null) return null;
+        if (scope.startsWith(RESERVE_PREFIX)) return null;
 
         if (!scope.startsWith("server:")) {
             throw new IllegalArgumentException("Unknown scope of '" + scope + " description " + description);
@@ -66,6 +89,16 @@ public class FipScope {
         return scope.substring(7);
     }
 
+    /**
+     * @return Pool the IP is reserved in, null if not ours or not kept in reserve.
+     */
+    public static @CheckForNull String getReservePool(@Nonnull String url, @Nonnull String identity, @CheckForNull String description) {
+        String scope = getScopeString(url, identity, description);
+        if (scope == null || !scope.startsWith(RESERVE_PREFIX)) return null;
+
+        return scope.substring(RESERVE_PREFIX.length());
+    }
+
     private static @CheckForNull String getScopeString(@Nonnull String url, @Nonnull String identity, @CheckForNull String description) {
         try {
             JSONObject jsonObject = JSONObject.fromObject(description);
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import com.codahale.metrics.MetricRegistry;
+import hudson.Extension;
+import jenkins.metrics.api.Metrics;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed OpenStack API statistics to the Dropwizard registry of the metrics plugin, when installed.
+ */
+@Extension(optional = true)
+@Restricted(NoExternalUse.class)
+public final class MetricsPluginReporter extends ApiMetrics.Reporter {
+
+    @Override
+    public void record(@Nonnull String operation, long nanos, @Nonnull String outcome) {
+        MetricRegistry registry = Metrics.metricRegistry();
+        registry.timer(MetricRegistry.name("openstack.api", operation)).update(nanos, TimeUnit.NANOSECONDS);
+        registry.counter(MetricRegistry.name("openstack.api", operation, outcome)).inc();
+    }
+
+    @Override
+    public void retry(@Nonnull String operation) {
+        Metrics.metricRegistry().counter(MetricRegistry.name("openstack.api", operation, "retries")).inc();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.network.NetFloatingIP;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.openstack.networking.domain.NeutronFloatingIP;
+import org.openstack4j.openstack.networking.domain.NeutronPort;
+import org.openstack4j.openstack.networking.internal.BaseNetworkingServices;
+import org.openstack4j.openstack.internal.BaseOpenStackService;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Neutron listings filtered by any of several values of an attribute, not exposed by openstack4j.
+ *
+ * Neutron matches resources carrying any of the values when the filter is repeated. The values are sent in chunks to
+ * keep the URL reasonably short. Operates on the session current for the calling thread, same as the openstack4j
+ * services do.
+ */
+@Restricted(NoExternalUse.class)
+/*package*/ class NeutronListing extends BaseNetworkingServices {
+    /*package*/ static int chunkSize = Integer.getInteger(NeutronListing.class.getName() + ".chunkSize", 50);
+
+    /**
+     * List floating IPs with the attribute equal to any of the values.
+     */
+    /*package*/ @Nonnull List<NetFloatingIP> floatingIps(@Nonnull String attribute, @Nonnull Collection<String> values) {
+        List<NetFloatingIP> fips = new ArrayList<>();
+        for (List<String> chunk : chunks(values)) {
+            NeutronFloatingIP.FloatingIPs page = filter(get(NeutronFloatingIP.FloatingIPs.class, uri("/floatingips")), attribute, chunk).execute();
+            if (page == null) throw new IllegalStateException("Unable to list floating IPs by " + attribute);
+            fips.addAll(page.getList());
+        }
+        return fips;
+    }
+
+    /**
+     * List ports with the attribute equal to any of the values.
+     */
+    /*package*/ @Nonnull List<Port> ports(@Nonnull String attribute, @Nonnull Collection<String> values) {
+        List<Port> ports = new ArrayList<>();
+        for (List<String> chunk : chunks(values)) {
+            NeutronPort.Ports page = filter(get(NeutronPort.Ports.class, uri("/ports")), attribute, chunk).execute();
+            if (page == null) throw new IllegalStateException("Unable to list ports by " + attribute);
+            ports.addAll(page.getList());
+        }
+        return ports;
+    }
+
+    private static <T> BaseOpenStackService.Invocation<T> filter(
+            @Nonnull BaseOpenStackService.Invocation<T> invocation, @Nonnull String attribute, @Nonnull List<String> values
+    ) {
+        for (String value : values) {
+            invocation = invocation.param(attribute, value);
+        }
+        return invocation;
+    }
+
+    private static @Nonnull List<List<String>> chunks(@Nonnull Collection<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        for (String value : values) {
+            if (chunk.size() == Math.max(chunkSize, 1)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.add(value);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
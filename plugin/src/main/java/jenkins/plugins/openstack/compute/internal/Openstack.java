@@ -32,7 +32,9 @@ import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
 import hudson.Util;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
 import jenkins.model.Jenkins;
 import jenkins.plugins.openstack.compute.auth.OpenstackCredential;
 import org.apache.commons.codec.binary.Base64;
@@ -43,7 +45,7 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.openstack4j.api.Builders;
 import org.openstack4j.api.OSClient;
 import org.openstack4j.api.client.IOSClientBuilder;
-import org.openstack4j.api.compute.ServerService;
+import org.openstack4j.api.exceptions.AuthenticationException;
 import org.openstack4j.api.exceptions.ResponseException;
 import org.openstack4j.api.networking.NetFloatingIPService;
 import org.openstack4j.api.networking.NetworkingService;
@@ -66,10 +68,12 @@ import org.openstack4j.model.storage.block.Volume;
 import org.openstack4j.model.storage.block.Volume.Status;
 import org.openstack4j.model.storage.block.VolumeSnapshot;
 import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -83,10 +87,18 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -115,6 +127,30 @@ public class Openstack {
 
     private static String INSTANCE_FINGERPRINT;
 
+    // Connection pool sizing of the underlying transport, 0 keeps the openstack4j defaults. Read by the Apache HttpClient
+    // connector only, the OkHttp one this plugin ships with does not size its pool from the config.
+    /*package*/ static int maxConnections = Integer.getInteger(Openstack.class.getName() + ".maxConnections", 0);
+    /*package*/ static int maxConnectionsPerRoute = Integer.getInteger(Openstack.class.getName() + ".maxConnectionsPerRoute", 0);
+
+    // Number of servers requested from Nova at once when listing
+    /*package*/ static int serverPageSize = Integer.getInteger(Openstack.class.getName() + ".serverPageSize", 200);
+
+    // Period of listing servers without filtering by owner tag, to find and tag those provisioned without it
+    /*package*/ static long untaggedSweepPeriod = Long.getLong(Openstack.class.getName() + ".untaggedSweepPeriod", TimeUnit.HOURS.toMillis(1));
+
+    // Time for floating IP to become active and visible in server addresses
+    /*package*/ static long fipPropagationTimeout = Long.getLong(Openstack.class.getName() + ".fipPropagationTimeout", TimeUnit.SECONDS.toMillis(30));
+
+    // Time before the token expiry to start renewing it in the background
+    /*package*/ static long tokenRenewalAhead = Long.getLong(Openstack.class.getName() + ".tokenRenewalAhead", TimeUnit.MINUTES.toMillis(5));
+    // Time not to retry failed token renewal, unless the token has expired
+    /*package*/ static long tokenRenewalRetry = Long.getLong(Openstack.class.getName() + ".tokenRenewalRetry", TimeUnit.SECONDS.toMillis(30));
+
+    // Renewals wait for Keystone, so they are kept off the shared timer
+    private static final ExecutorService TOKEN_RENEWAL = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "OpenStack token renewal")
+    );
+
     private static final Comparator<Date> ACCEPT_NULLS = Comparator.nullsLast(Comparator.naturalOrder());
     private static final Comparator<Flavor> FLAVOR_COMPARATOR = Comparator.nullsLast(Comparator.comparing(Flavor::getName));
     private static final Comparator<AvailabilityZone> AVAILABILITY_ZONES_COMPARATOR = Comparator.nullsLast(
@@ -130,10 +166,43 @@ public class Openstack {
     // Store the OS session token so clients can be created from it per all threads using this.
     private final ClientProvider clientProvider;
 
+    private final ServerInventory inventory = new ServerInventory(
+            this::listOwnedServers, this::listServerChanges, this::isOurs
+    );
+
+    private final BootPoller bootPoller = new BootPoller(
+            this::listServerChanges, id -> call("nova.servers.get", () -> clientProvider.get().compute().servers().get(id))
+    );
+
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private final FipReserve fipReserve = new FipReserve(this);
+
+    private final DestroyBatcher destroyBatcher = new DestroyBatcher(this::getAssociatedFips);
+
+    private final QuotaTracker quota = new QuotaTracker(
+            () -> call("nova.limits.get", () -> clientProvider.get().compute().quotaSets().limits().getAbsolute())
+    );
+
+    private final FipPoller fipPoller = new FipPoller(
+            ids -> call("neutron.floatingips.list", () -> neutronListing().floatingIps("id", ids)),
+            id -> call("neutron.floatingips.get", () -> clientProvider.get().networking().floatingip().get(id))
+    );
+
+    // Unknown until first used
+    private volatile @CheckForNull Boolean tagsSupported;
+    private volatile long lastUntaggedSweep;
+
     private static final @Nonnull Cache<Openstack, List<? extends Network>> networksCache
             = Caffeine.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).build()
     ;
 
+    private static final @Nonnull Cache<Openstack, Map<String, Flavor>> flavorsCache
+            = Caffeine.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).build()
+    ;
+
     // The time to cache here is questionable as the information can get outdated based on activity out of our reach.
     // Caching this for few seconds will smooth spikes provisioning many VMs at the time, although it might cause some
     // of provisioning attempts to fail in case the number fo the VMs is larger than number of free IPs in the pool with most free IPs.
@@ -141,6 +210,15 @@ public class Openstack {
             = Caffeine.newBuilder().expireAfterWrite(5, TimeUnit.SECONDS).build()
     ;
 
+    // Boot source resolution is repeated for every server provisioned. Caching it briefly makes the servers provisioned
+    // in the same round resolve it once, while changes in the images or snapshots are still reflected soon.
+    private final @Nonnull Cache<String, List<String>> imageIdsCache
+            = Caffeine.newBuilder().expireAfterWrite(10, TimeUnit.SECONDS).build()
+    ;
+    private final @Nonnull Cache<String, List<String>> volumeSnapshotIdsCache
+            = Caffeine.newBuilder().expireAfterWrite(10, TimeUnit.SECONDS).build()
+    ;
+
     private Openstack(@Nonnull String endPointUrl, boolean ignoreSsl, @Nonnull OpenstackCredential auth, @CheckForNull String region) {
 
         final IOSClientBuilder<? extends OSClient<?>, ?> builder = auth.getBuilder(endPointUrl);
@@ -151,21 +229,44 @@ public class Openstack {
         if (ignoreSsl) {
             config.withSSLVerificationDisabled();
         }
+        if (maxConnections > 0) {
+            config.withMaxConnections(maxConnections);
+        }
+        if (maxConnectionsPerRoute > 0) {
+            config.withMaxConnectionsPerRoute(maxConnectionsPerRoute);
+        }
 
-        OSClient<?> client = builder
+        OSClient<?> client = ApiMetrics.time("keystone.tokens.create", () -> builder
                 .withConfig(config)
                 .authenticate()
-                .useRegion(region);
+        ).useRegion(region);
 
-        clientProvider = ClientProvider.get(client, region, config);
+        clientProvider = ClientProvider.get(client, region, config, TOKEN_RENEWAL, () -> ApiMetrics.time("keystone.tokens.create", () -> auth.getBuilder(endPointUrl)
+                .withConfig(config)
+                .authenticate()
+        ).useRegion(region));
         debug("Openstack client created for \"{0}\", \"{1}\".", auth.toString(), region);
     }
 
     @VisibleForTesting
     public Openstack(@Nonnull final OSClient<?> client) {
-        this.clientProvider = new ClientProvider() {
-            @Override public @Nonnull OSClient<?> get() {
-                return client;
+        this.clientProvider = new ClientProvider(null, TOKEN_RENEWAL) {
+            private volatile @Nonnull OSClient<?> current = client;
+
+            @Override protected @Nonnull OSClient<?> create() {
+                return current;
+            }
+
+            @Override protected @CheckForNull Object getAuth() {
+                return current;
+            }
+
+            @Override protected @CheckForNull Date getExpires() {
+                return null; // Not known for the client given, so never renewed
+            }
+
+            @Override protected void update(@Nonnull OSClient<?> renewed) {
+                current = renewed;
             }
 
             @Override public @Nonnull String getInfo() {
@@ -188,11 +289,89 @@ public class Openstack {
         return clientProvider.getInfo();
     }
 
+    /**
+     * Number of API calls served by already established client session.
+     */
+    public long getClientSessionHits() {
+        return clientProvider.getHits();
+    }
+
+    /**
+     * Number of client sessions created.
+     */
+    public long getClientSessionMisses() {
+        return clientProvider.getMisses();
+    }
+
+    /**
+     * Adaptive limit of concurrent calls to this OpenStack.
+     */
+    public @Nonnull ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * State of calls to this OpenStack, open when it is failing.
+     */
+    public @Nonnull CircuitBreaker.State getApiState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * OpenStack is failing and calls are rejected without trying.
+     */
+    public boolean isUnavailable() {
+        return circuitBreaker.isOpen();
+    }
+
+    private <T> T call(@Nonnull String operation, @Nonnull Supplier<T> call) {
+        boolean trial = circuitBreaker.permit();
+        // Trial that did not get a response, rejected by the limiter included, does not prove the API recovered
+        boolean failed = trial;
+        try {
+            T result = limiter.call(operation, call);
+            // Some services report server errors in the response rather than throwing
+            failed = result instanceof ActionResponse && CircuitBreaker.isFailure((ActionResponse) result);
+            return result;
+        } catch (ResponseException ex) {
+            failed = CircuitBreaker.isFailure(ex);
+            if (ex instanceof AuthenticationException) {
+                // Token can not be renewed, most likely the credentials are outdated
+                FactoryEP.invalidate(this);
+            }
+            throw ex;
+        } finally {
+            circuitBreaker.record(trial, failed);
+        }
+    }
+
+    private @Nonnull Map<String, Flavor> getFlavorsById() {
+        return Objects.requireNonNull(flavorsCache.get(this, os -> {
+            Map<String, Flavor> flavors = new HashMap<>();
+            for (Flavor flavor : os.call("nova.flavors.list", () -> os.clientProvider.get().compute().flavors().list())) {
+                flavors.put(flavor.getId(), flavor);
+            }
+            return flavors;
+        }));
+    }
+
+    /**
+     * Project quota left for provisioning, null when it can not be determined.
+     */
+    public @CheckForNull QuotaTracker.Headroom getQuotaHeadroom() {
+        try {
+            return quota.getHeadroom(getFlavorsById());
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Unable to determine quota left", ex);
+            return null;
+        }
+    }
+
     @VisibleForTesting
     public @Nonnull List<? extends Network> _listNetworks() {
         return Objects.requireNonNull(networksCache.get(
                 this,
-                (os) -> os.clientProvider.get().networking().network().list()
+                (os) -> os.call("neutron.networks.list", () -> os.clientProvider.get().networking().network().list())
         ));
     }
 
@@ -250,7 +429,7 @@ public class Openstack {
     public List<? extends NetworkIPAvailability> getNetworkIPAvailability() {
         return Objects.requireNonNull(networkIpAvailabilityCache.get(
                 this,
-                (os) -> os.clientProvider.get().networking().networkIPAvailability().get()
+                (os) -> os.call("neutron.ipavailability.get", () -> os.clientProvider.get().networking().networkIPAvailability().get())
         ));
     }
 
@@ -289,11 +468,11 @@ public class Openstack {
         Map<String, String> params = new HashMap<>(2);
         params.put("limit", Integer.toString(LIMIT));
 
-        List<? extends Image> page = clientProvider.get().imagesV2().list(params);
+        List<? extends Image> page = call("glance.images.list", () -> clientProvider.get().imagesV2().list(params));
         List<Image> all = new ArrayList<>(page);
         while(page.size() == LIMIT) {
             params.put("marker", page.get(LIMIT - 1).getId());
-            page = clientProvider.get().imagesV2().list(params);
+            page = call("glance.images.list", () -> clientProvider.get().imagesV2().list(params));
             all.addAll(page);
         }
 
@@ -309,7 +488,7 @@ public class Openstack {
      *         given name are sorted by creation date.
      */
     public @Nonnull Map<String, List<VolumeSnapshot>> getVolumeSnapshots() {
-        final List<? extends VolumeSnapshot> list = clientProvider.get().blockStorage().snapshots().list();
+        final List<? extends VolumeSnapshot> list = call("cinder.snapshots.list", () -> clientProvider.get().blockStorage().snapshots().list());
         TreeMap<String, List<VolumeSnapshot>> data = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
         //final TreeMultimap<String, VolumeSnapshot> set = TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, VOLUMESNAPSHOT_DATE_COMPARATOR);
         for (VolumeSnapshot vs : list) {
@@ -334,15 +513,15 @@ public class Openstack {
 
 
     public @Nonnull Collection<? extends Flavor> getSortedFlavors() {
-        List<? extends Flavor> flavors = clientProvider.get().compute().flavors().list();
+        List<? extends Flavor> flavors = call("nova.flavors.list", () -> clientProvider.get().compute().flavors().list());
         flavors.sort(FLAVOR_COMPARATOR);
         return flavors;
     }
 
 
     public @Nonnull List<String> getSortedIpPools() {
-        List<? extends Router> routers = clientProvider.get().networking().router().list();
-        List<? extends Network> networks = clientProvider.get().networking().network().list();
+        List<? extends Router> routers = call("neutron.routers.list", () -> clientProvider.get().networking().router().list());
+        List<? extends Network> networks = call("neutron.networks.list", () -> clientProvider.get().networking().network().list());
 
         // There can be multiple router->subnet connection for the same network
         HashSet<Network> applicablePublicNetworks = new HashSet<>();
@@ -359,23 +538,169 @@ public class Openstack {
     }
 
     public @Nonnull List<? extends AvailabilityZone> getAvailabilityZones() {
-        final List<? extends AvailabilityZone> zones = clientProvider.get().compute().zones().list();
+        final List<? extends AvailabilityZone> zones = call("nova.zones.list", () -> clientProvider.get().compute().zones().list());
         zones.sort(AVAILABILITY_ZONES_COMPARATOR);
         return zones;
     }
 
+    /**
+     * Get servers provisioned by this Jenkins instance that are still occupied.
+     *
+     * The data are fetched after this call was made.
+     */
     public @Nonnull List<Server> getRunningNodes() {
-        List<Server> running = new ArrayList<>();
+        return getRunningNodes(0);
+    }
 
-        // We need details to inspect state and metadata
-        final boolean detailed = true;
-        for (Server n: clientProvider.get().compute().servers().list(detailed)) {
-            if (isOccupied(n) && isOurs(n)) {
-                running.add(n);
+    /**
+     * Get servers provisioned by this Jenkins instance that are still occupied.
+     *
+     * @param maxStaleness Maximal age of the data in milliseconds.
+     */
+    public @Nonnull List<Server> getRunningNodes(@Nonnegative long maxStaleness) {
+        return inventory.get(maxStaleness);
+    }
+
+    /**
+     * List all servers owned by this instance.
+     *
+     * The servers are filtered by owner tag in Nova when supported. Servers provisioned by earlier versions of the plugin,
+     * or those the tagging has failed for, are not found this way so unfiltered listing is performed periodically to tag them.
+     */
+    @VisibleForTesting
+    /*package*/ @Nonnull List<Server> listOwnedServers() {
+        long now = System.currentTimeMillis();
+        if (tagsSupported != Boolean.FALSE && now - lastUntaggedSweep < untaggedSweepPeriod) {
+            try {
+                return listTaggedServers();
+            } catch (ResponseException | IllegalStateException ex) {
+                tagsFailed(ex);
             }
         }
 
-        return running;
+        List<Server> all = listServers(Collections.emptyMap());
+        lastUntaggedSweep = now;
+        if (tagsSupported != Boolean.FALSE) {
+            try {
+                Set<String> tagged = listTaggedServers().stream().map(Server::getId).collect(Collectors.toSet());
+                for (Server server : all) {
+                    if (!tagged.contains(server.getId())) {
+                        tagServer(server.getId());
+                    }
+                }
+            } catch (ResponseException | IllegalStateException ex) {
+                tagsFailed(ex);
+            }
+        }
+        return all;
+    }
+
+    private @Nonnull List<Server> listTaggedServers() {
+        ServerTags tags = serverTags();
+        List<Server> servers = listPages(
+                Collections.singletonMap("tags", ownerTag()), query -> call("nova.servers.list.tagged", () -> tags.list(query))
+        );
+        tagsSupported = Boolean.TRUE;
+        return servers;
+    }
+
+    private void tagsFailed(@Nonnull RuntimeException ex) {
+        // Only rejected microversion or filter indicates the tags are not supported, and never once they worked
+        if (tagsSupported != Boolean.TRUE && ex instanceof ResponseException && isTagsUnsupported(((ResponseException) ex).getStatus())) {
+            LOGGER.log(Level.INFO, "Server tags not supported by the cloud, ownership will be determined client-side only", ex);
+            tagsSupported = Boolean.FALSE;
+        } else {
+            LOGGER.log(Level.WARNING, "Failed to list servers by tag", ex);
+        }
+    }
+
+    private static boolean isTagsUnsupported(int status) {
+        return status == 400 || status == 404 || status == 406;
+    }
+
+    /**
+     * Mark the server as ours with a tag, so it can be listed without the servers we do not own. Best effort.
+     */
+    private void tagServer(@Nonnull String serverId) {
+        if (tagsSupported == Boolean.FALSE) return;
+
+        try {
+            ServerTags tags = serverTags();
+            ActionResponse res = call("nova.servers.tags.add", () -> tags.add(serverId, ownerTag()));
+            if (res != null && !res.isSuccess()) {
+                LOGGER.log(Level.WARNING, "Unable to tag server " + serverId + ": " + res);
+            }
+        } catch (ResponseException ex) {
+            LOGGER.log(Level.WARNING, "Unable to tag server " + serverId, ex);
+        }
+    }
+
+    @VisibleForTesting // mocking
+    /*package*/ @Nonnull NeutronListing neutronListing() {
+        clientProvider.get(); // Make sure the session is current for this thread
+        return new NeutronListing();
+    }
+
+    @VisibleForTesting // mocking
+    /*package*/ @Nonnull ServerTags serverTags() {
+        clientProvider.get(); // Make sure the session is current for this thread
+        return new ServerTags();
+    }
+
+    /**
+     * Tag identifying servers provisioned by this Jenkins instance.
+     */
+    @VisibleForTesting
+    public @Nonnull String ownerTag() {
+        return "jenkins-" + instanceFingerprint();
+    }
+
+    /**
+     * List servers owned by this instance matching the query.
+     */
+    private @Nonnull List<Server> listServers(@Nonnull Map<String, String> query) {
+        return listServers("nova.servers.list", query);
+    }
+
+    /**
+     * List servers changed since given ISO 8601 time.
+     *
+     * Named apart from the full listing, as the latency of the two differs by orders of magnitude and the limiter
+     * compares each call with the usual latency of its operation.
+     */
+    private @Nonnull List<Server> listServerChanges(@Nonnull String since) {
+        return listServers("nova.servers.list.changes", Collections.singletonMap("changes-since", since));
+    }
+
+    private @Nonnull List<Server> listServers(@Nonnull String operation, @Nonnull Map<String, String> query) {
+        // We need details to inspect state and metadata
+        return listPages(query, q -> call(operation, () -> clientProvider.get().compute().servers().list(q)));
+    }
+
+    /**
+     * Request servers page by page discarding foreign ones as each page arrives.
+     *
+     * The memory needed is bounded by the page size rather than by the number of servers in the tenant. Note that the
+     * listing is not complete after the first page smaller than requested as Nova can be configured to cap the page size lower.
+     */
+    private @Nonnull List<Server> listPages(
+            @Nonnull Map<String, String> query, @Nonnull Function<Map<String, String>, List<? extends Server>> lister
+    ) {
+        Map<String, String> params = new HashMap<>(query);
+        params.put("limit", Integer.toString(serverPageSize));
+
+        List<Server> ours = new ArrayList<>();
+        while (true) {
+            List<? extends Server> page = lister.apply(params);
+            if (page.isEmpty()) return ours;
+
+            for (Server server : page) {
+                if (isOurs(server)) {
+                    ours.add(server);
+                }
+            }
+            params.put("marker", page.get(page.size() - 1).getId());
+        }
     }
 
     /**
@@ -383,7 +708,7 @@ public class Openstack {
      */
     public @Nonnull List<String> getFreeFipIds() {
         List<String> freeIps = new ArrayList<>();
-        for (NetFloatingIP ip : clientProvider.get().networking().floatingip().list()) {
+        for (NetFloatingIP ip : call("neutron.floatingips.list", () -> clientProvider.get().networking().floatingip().list())) {
             if (ip.getFixedIpAddress() != null) continue; // Used
 
             String serverId = FipScope.getServerId(instanceUrl(), instanceFingerprint(), ip.getDescription());
@@ -397,7 +722,7 @@ public class Openstack {
 
     public @Nonnull List<String> getSortedKeyPairNames() {
         List<String> keyPairs = new ArrayList<>();
-        for (Keypair kp : clientProvider.get().compute().keypairs().list()) {
+        for (Keypair kp : call("nova.keypairs.list", () -> clientProvider.get().compute().keypairs().list())) {
             keyPairs.add(kp.getName());
         }
         return keyPairs;
@@ -412,14 +737,18 @@ public class Openstack {
      * @return Zero, one or multiple IDs.
      */
     public @Nonnull List<String> getImageIdsFor(String nameOrId) {
+        return new ArrayList<>(Objects.requireNonNull(imageIdsCache.get(nameOrId, this::_getImageIdsFor)));
+    }
+
+    private @Nonnull List<String> _getImageIdsFor(String nameOrId) {
         final Collection<Image> sortedObjects = new TreeSet<>(IMAGE_DATE_COMPARATOR);
         final Map<String, String> query = new HashMap<>(2);
         query.put("name", nameOrId);
         query.put("status", "active");
-        final List<? extends Image> findByName = clientProvider.get().imagesV2().list(query);
+        final List<? extends Image> findByName = call("glance.images.list", () -> clientProvider.get().imagesV2().list(query));
         sortedObjects.addAll(findByName);
         if (nameOrId.matches("[0-9a-f-]{36}")) {
-            final Image findById = clientProvider.get().imagesV2().get(nameOrId);
+            final Image findById = call("glance.images.get", () -> clientProvider.get().imagesV2().get(nameOrId));
             if (findById != null && findById.getStatus() == Image.ImageStatus.ACTIVE) {
                 sortedObjects.add(findById);
             }
@@ -440,6 +769,10 @@ public class Openstack {
      * @return Zero, one or multiple IDs.
      */
     public @Nonnull List<String> getVolumeSnapshotIdsFor(String nameOrId) {
+        return new ArrayList<>(Objects.requireNonNull(volumeSnapshotIdsCache.get(nameOrId, this::_getVolumeSnapshotIdsFor)));
+    }
+
+    private @Nonnull List<String> _getVolumeSnapshotIdsFor(String nameOrId) {
         final Collection<VolumeSnapshot> sortedObjects = new TreeSet<>(VOLUMESNAPSHOT_DATE_COMPARATOR);
         // OpenStack block-storage/v3 API doesn't allow us to filter by name, so fetch all and search.
         final Map<String, List<VolumeSnapshot>> allVolumeSnapshots = getVolumeSnapshots();
@@ -448,7 +781,7 @@ public class Openstack {
             sortedObjects.addAll(findByName);
         }
         if (nameOrId.matches("[0-9a-f-]{36}")) {
-            final VolumeSnapshot findById = clientProvider.get().blockStorage().snapshots().get(nameOrId);
+            final VolumeSnapshot findById = call("cinder.snapshots.get", () -> clientProvider.get().blockStorage().snapshots().get(nameOrId));
             if (findById != null && findById.getStatus() == Status.AVAILABLE) {
                 sortedObjects.add(findById);
             }
@@ -470,7 +803,7 @@ public class Openstack {
      * @return The description string, or null if there isn't one.
      */
     public @CheckForNull String getVolumeSnapshotDescription(String volumeSnapshotId) {
-        return clientProvider.get().blockStorage().snapshots().get(volumeSnapshotId).getDescription();
+        return call("cinder.snapshots.get", () -> clientProvider.get().blockStorage().snapshots().get(volumeSnapshotId)).getDescription();
     }
 
     /**
@@ -485,7 +818,7 @@ public class Openstack {
      *            The new description for the volume.
      */
     public void setVolumeNameAndDescription(String volumeId, String newVolumeName, String newVolumeDescription) {
-        final ActionResponse res = clientProvider.get().blockStorage().volumes().update(volumeId, newVolumeName, newVolumeDescription);
+        final ActionResponse res = call("cinder.volumes.update", () -> clientProvider.get().blockStorage().volumes().update(volumeId, newVolumeName, newVolumeDescription));
         throwIfFailed(res);
     }
 
@@ -544,14 +877,14 @@ public class Openstack {
     }
 
     public @Nonnull Server getServerById(@Nonnull String id) throws NoSuchElementException {
-        Server server = clientProvider.get().compute().servers().get(id);
+        Server server = call("nova.servers.get", () -> clientProvider.get().compute().servers().get(id));
         if (server == null) throw new NoSuchElementException("No such server running: " + id);
         return server;
     }
 
     public @Nonnull List<Server> getServersByName(@Nonnull String name) {
         List<Server> ret = new ArrayList<>();
-        for (Server server : clientProvider.get().compute().servers().list(Collections.singletonMap("name", name))) {
+        for (Server server : call("nova.servers.list.name", () -> clientProvider.get().compute().servers().list(Collections.singletonMap("name", name)))) {
             if (isOurs(server)) {
                 ret.add(server);
             }
@@ -569,6 +902,15 @@ public class Openstack {
 
         // Mark the server as ours
         attachFingerprint(request);
+        QuotaTracker.Reservation reservation = quota.reserveServer(() -> {
+            String flavorId = request.build().getFlavorRef();
+            try {
+                return flavorId == null ? null : getFlavorsById().get(flavorId);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.FINE, "Unable to resolve flavor " + flavorId, ex);
+                return null; // Count the instance only
+            }
+        });
         try {
             Server server = _bootAndWaitActive(request, timeout);
             if (server == null) {
@@ -598,6 +940,8 @@ public class Openstack {
             return server;
         } catch (ResponseException ex) {
             throw new ActionFailed(ex.getMessage(), ex);
+        } finally {
+            reservation.complete();
         }
     }
 
@@ -609,7 +953,23 @@ public class Openstack {
 
     @Restricted(NoExternalUse.class) // Test hook
     public Server _bootAndWaitActive(@Nonnull ServerCreateBuilder request, @Nonnegative int timeout) {
-        return clientProvider.get().compute().servers().bootAndWaitActive(request.build(), timeout);
+        Server booted = call("nova.servers.boot", () -> clientProvider.get().compute().servers().boot(request.build()));
+        if (booted == null) throw new ActionFailed("Failed to boot server " + request.build().getName());
+
+        tagServer(booted.getId());
+        try {
+            // The state is polled for all servers booted at the time together
+            Server server = bootPoller.watch(booted.getId(), timeout).get();
+            if (server != null) {
+                inventory.put(server);
+            }
+            return server;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // Reset interrupt flag
+            throw new ActionFailed("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new ActionFailed(ex.getMessage(), ex.getCause());
+        }
     }
 
     /**
@@ -628,34 +988,62 @@ public class Openstack {
     public void destroyServer(@Nonnull Server server) throws ActionFailed {
         String nodeId = server.getId();
 
-        NetFloatingIPService fipService = clientProvider.get().networking().floatingip();
-        List<String> portIds = getServerPorts(server).stream().map(Port::getId).collect(Collectors.toList());
-        List<? extends NetFloatingIP> associatedFips = fipService.list().stream().filter(
-                fip -> portIds.contains(fip.getPortId())
-        ).collect(Collectors.toList());
+        destroyBatcher.destroy(nodeId, fips -> {
+            ActionResponse serverDelete = call("nova.servers.delete", () -> clientProvider.get().compute().servers().delete(nodeId));
+            if (serverDelete.getCode() == 404) {
+                debug("Machine destroyed: {0}", nodeId);
+            } else {
+                throwIfFailed(serverDelete);
+            }
+            inventory.remove(nodeId);
+
+            NetFloatingIPService fipService = clientProvider.get().networking().floatingip();
+            for (String fip : fips) {
+                ActionResponse fipDelete = call("neutron.floatingips.delete", () -> fipService.delete(fip));
+                if (fipDelete.getCode() == 404) {
+                    debug("Fip destroyed: {0}", fip);
+                    continue;
+                }
 
-        ServerService servers = clientProvider.get().compute().servers();
-        server = servers.get(nodeId);
-        if (server == null || server.getStatus() == Server.Status.DELETED) {
-            debug("Machine destroyed: {0}", nodeId);
-        }
+                throwIfFailed(fipDelete);
+            }
+        });
+    }
 
-        ActionResponse serverDelete = servers.delete(nodeId);
-        if (serverDelete.getCode() == 404) {
-            debug("Machine destroyed: {0}", nodeId);
+    /**
+     * Get floating IPs associated with servers' ports, indexed by server id.
+     */
+    private @Nonnull Map<String, List<String>> getAssociatedFips(@Nonnull Set<String> serverIds) {
+        NetworkingService networking = clientProvider.get().networking();
+
+        Map<String, String> portServers = new HashMap<>();
+        if (serverIds.size() == 1) {
+            String serverId = serverIds.iterator().next();
+            for (Port port : call("neutron.ports.list", () -> networking.port().list(PortListOptions.create().deviceId(serverId)))) {
+                portServers.put(port.getId(), serverId);
+            }
         } else {
-            throwIfFailed(serverDelete);
+            for (Port port : call("neutron.ports.list", () -> neutronListing().ports("device_id", serverIds))) {
+                if (serverIds.contains(port.getDeviceId())) {
+                    portServers.put(port.getId(), port.getDeviceId());
+                }
+            }
         }
 
-        for (NetFloatingIP fip : associatedFips) {
-            ActionResponse fipDelete = fipService.delete(fip.getId());
-            if (fipDelete.getCode() == 404) {
-                debug("Fip destroyed: {0}", fip.getId());
-                continue;
-            }
+        Map<String, List<String>> fips = new HashMap<>();
+        if (portServers.isEmpty()) return fips;
 
-            throwIfFailed(fipDelete);
+        List<? extends NetFloatingIP> associated = portServers.size() == 1
+                ? call("neutron.floatingips.list", () -> networking.floatingip().list(Collections.singletonMap("port_id", portServers.keySet().iterator().next())))
+                : call("neutron.floatingips.list", () -> neutronListing().floatingIps("port_id", portServers.keySet()))
+        ;
+        for (NetFloatingIP fip : associated) {
+            String serverId = portServers.get(fip.getPortId());
+            if (serverId != null) {
+                fips.computeIfAbsent(serverId, id -> new ArrayList<>()).add(fip.getId());
+            }
         }
+        return fips;
     }
 
     /**
@@ -663,56 +1051,137 @@ public class Openstack {
      *
      * Note that after the successful assignment, the old Server instance becomes outdated as it does not contain the IP details.
      *
-     * The IP description will contain fingerprint linking it back to server it was created for. It is guaranteed it will
-     * be created after the server so any IP found without its server running is a leaked one.
+     * The IP is taken from the reserve of the pool if there is one. Otherwise, new IP is allocated with description
+     * containing fingerprint linking it back to server it was created for. It is guaranteed it will be created after the
+     * server so any such IP found without its server running is a leaked one.
      *
      * @param server Server to assign FIP
      * @param poolName Name of the FIP pool to use.
      * @return Updated server.
      */
     public @Nonnull Server assignFloatingIp(@Nonnull Server server, @Nonnull String poolName) throws ActionFailed {
-        debug("Allocating floating IP for {0} in {1}", server.getName(), server.getName());
+        debug("Allocating floating IP for {0} in {1}", server.getName(), poolName);
         NetworkingService networking = clientProvider.get().networking();
 
-        String desc = FipScope.getDescription(instanceUrl(), instanceFingerprint(), server);
-
         Port port = getServerPorts(server).get(0);
-        Network network = networking.network().list(Collections.singletonMap("name", poolName)).get(0);
-        NetFloatingIP fip = Builders.netFloatingIP().floatingNetworkId(network.getId()).portId(port.getId()).description(desc).build();
         try {
-            NetFloatingIP ip = networking.floatingip().create(fip);
-            // Make sure address information is reflected in metadata
-            for (int i = 0; i < 30; i++) {
+            NetFloatingIP reserved = associateReservedFip(port, poolName);
+            final NetFloatingIP ip;
+            if (reserved != null) {
+                ip = reserved;
+            } else {
+                String desc = FipScope.getDescription(instanceUrl(), instanceFingerprint(), server);
+                Network network = getFipPoolNetwork(poolName);
+                NetFloatingIP fip = Builders.netFloatingIP().floatingNetworkId(network.getId()).portId(port.getId()).description(desc).build();
+                QuotaTracker.Reservation reservation = quota.reserveFloatingIp();
                 try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt(); // Reset interrupt flag
-                    throw new ActionFailed("Interrupted", ex);
+                    ip = call("neutron.floatingips.create", () -> networking.floatingip().create(fip));
+                } finally {
+                    reservation.complete();
                 }
-                server = updateInfo(server);
-                Optional<? extends Address> newIp = server.getAddresses().getAddresses().values().stream()
-                        .flatMap(Collection::stream)
-                        .filter(address -> Objects.equals(address.getAddr(), ip.getFloatingIpAddress()))
-                        .findFirst()
-                ;
-                if (newIp.isPresent()) {
-                    return server;
+            }
+            long deadline = System.currentTimeMillis() + fipPropagationTimeout;
+            NetFloatingIP active = fipPoller.watch(ip.getId(), fipPropagationTimeout).get();
+            if (active != null) {
+                // Make sure address information is reflected in metadata, Nova catches up with Neutron shortly
+                for (long delay = FipPoller.minInterval; System.currentTimeMillis() < deadline; delay = Math.min(delay * 2, FipPoller.maxInterval)) {
+                    server = updateInfo(server);
+                    Optional<? extends Address> newIp = server.getAddresses().getAddresses().values().stream()
+                            .flatMap(Collection::stream)
+                            .filter(address -> Objects.equals(address.getAddr(), ip.getFloatingIpAddress()))
+                            .findFirst()
+                    ;
+                    if (newIp.isPresent()) {
+                        return server;
+                    }
+                    Thread.sleep(Math.min(delay, Math.max(deadline - System.currentTimeMillis(), 0)));
                 }
             }
             destroyFip(ip.getId());
             throw new ActionFailed("IP address not propagated in time for " + server.getName());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // Reset interrupt flag
+            throw new ActionFailed("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new ActionFailed("Unable to wait for floating IP of " + server.getName(), ex.getCause());
         } catch (ResponseException ex) {
-            // TODO Grab some still IPs from JCloudsCleanupThread
             throw new ActionFailed(ex.getMessage() + " Allocating for " + server.getName(), ex);
         }
     }
 
+    private @CheckForNull NetFloatingIP associateReservedFip(@Nonnull Port port, @Nonnull String poolName) {
+        NetFloatingIPService fips = clientProvider.get().networking().floatingip();
+        String fipId;
+        while ((fipId = fipReserve.take(poolName)) != null) {
+            String reserved = fipId;
+            try {
+                NetFloatingIP ip = call("neutron.floatingips.associate", () -> fips.associateToPort(reserved, port.getId()));
+                if (ip != null) return ip;
+            } catch (ResponseException ex) {
+                // Might be deleted meanwhile, try next one
+                LOGGER.log(Level.WARNING, "Unable to associate reserved floating IP " + fipId, ex);
+            }
+            ApiMetrics.retry("neutron.floatingips.associate");
+        }
+        return null;
+    }
+
+    private @Nonnull Network getFipPoolNetwork(@Nonnull String poolName) throws ActionFailed {
+        for (Network network : _listNetworks()) {
+            if (poolName.equals(network.getName())) return network;
+        }
+
+        // Not in cache, might have been created recently
+        List<? extends Network> networks = call("neutron.networks.list", () -> clientProvider.get().networking().network().list(Collections.singletonMap("name", poolName)));
+        if (networks.isEmpty()) throw new ActionFailed("No floating IP pool network named " + poolName);
+        return networks.get(0);
+    }
+
+    /**
+     * Allocate new IP to keep in the reserve of the pool.
+     */
+    /*package*/ @Nonnull String createReserveFip(@Nonnull String poolName) {
+        String desc = FipScope.getReserveDescription(instanceUrl(), instanceFingerprint(), poolName);
+        NetFloatingIP fip = Builders.netFloatingIP().floatingNetworkId(getFipPoolNetwork(poolName).getId()).description(desc).build();
+        QuotaTracker.Reservation reservation = quota.reserveFloatingIp();
+        try {
+            return call("neutron.floatingips.create", () -> clientProvider.get().networking().floatingip().create(fip)).getId();
+        } finally {
+            reservation.complete();
+        }
+    }
+
+    /**
+     * Get IPs kept in reserve of this instance that are not associated, indexed by pool.
+     */
+    /*package*/ @Nonnull Map<String, List<String>> listReserveFips() {
+        Map<String, List<String>> reserved = new HashMap<>();
+        for (NetFloatingIP ip : call("neutron.floatingips.list", () -> clientProvider.get().networking().floatingip().list())) {
+            if (ip.getFixedIpAddress() != null) continue; // Used
+
+            String pool = FipScope.getReservePool(instanceUrl(), instanceFingerprint(), ip.getDescription());
+            if (pool == null) continue; // Not ours or not reserved
+
+            reserved.computeIfAbsent(pool, p -> new ArrayList<>()).add(ip.getId());
+        }
+        return reserved;
+    }
+
+    /**
+     * Synchronize the reserve of floating IPs with the cloud, releasing those not needed and refilling the rest.
+     *
+     * @param activePools Pools configured to be used.
+     */
+    public void reclaimFipReserve(@Nonnull Collection<String> activePools) {
+        fipReserve.reclaim(activePools);
+    }
+
     private List<? extends Port> getServerPorts(@Nonnull Server server) {
-        return clientProvider.get().networking().port().list(PortListOptions.create().deviceId(server.getId()));
+        return call("neutron.ports.list", () -> clientProvider.get().networking().port().list(PortListOptions.create().deviceId(server.getId())));
     }
 
     public void destroyFip(String fip) {
-        ActionResponse delete = clientProvider.get().networking().floatingip().delete(fip);
+        ActionResponse delete = call("neutron.floatingips.delete", () -> clientProvider.get().networking().floatingip().delete(fip));
 
         // Deleted by some other action. Being idempotent here and reporting success.
         if (delete.getCode() == 404) return;
@@ -869,13 +1338,9 @@ public class Openstack {
     @Restricted(NoExternalUse.class) // Extension point just for testing
     public static abstract class FactoryEP implements ExtensionPoint {
         private final transient @Nonnull Cache<String, Openstack> cache = Caffeine.newBuilder()
-                // There is no clear reasoning behind particular expiration policy except that individual instances can
-                // have different token expiration time, which is something guava does not support. This expiration needs
-                // to be implemented separately.
-                // According to OpenStack documentation, default token lifetime is one hour BUT we have to ensure that
-                // we do not cache anything beyond its expiry (see JENKINS-46541) so we've settled on 10 minutes as a
-                // compromise between discarding too quickly and the danger of keeping them for too long.
-                .expireAfterWrite(10, TimeUnit.MINUTES)
+                // Instances renew their tokens before they expire (see JENKINS-46541), so they are only discarded when
+                // not used for a while.
+                .expireAfterAccess(1, TimeUnit.HOURS)
                 .build()
         ;
 
@@ -889,19 +1354,25 @@ public class Openstack {
         public static @Nonnull Openstack get(
                 @Nonnull final String endPointUrl, final boolean ignoreSsl, @Nonnull final OpenstackCredential auth, @CheckForNull final String region
         ) throws FormValidation {
+            return get(new Connection(endPointUrl, ignoreSsl, auth, region));
+        }
+
+        /**
+         * Instantiate Openstack client for connection resolved beforehand.
+         */
+        public static @Nonnull Openstack get(@Nonnull final Connection connection) throws FormValidation {
             final FactoryEP ep = ExtensionList.lookup(FactoryEP.class).get(0);
             final Function<String, Openstack> cacheMissFunction = (String unused) -> {
                 try {
-                    return ep.getOpenstack(endPointUrl, ignoreSsl, auth, region);
+                    return ep.getOpenstack(connection.endPointUrl, connection.ignoreSsl, connection.auth, connection.region);
                 } catch (FormValidation ex) {
                     throw new RuntimeException(ex);
                 }
             };
 
-            final String fingerprint = getCloudConnectionFingerprint(endPointUrl, ignoreSsl, auth, region);
             try {
                 // cacheMissFunction is guaranteed to return nonnull
-                return Objects.requireNonNull(ep.cache.get(fingerprint, cacheMissFunction));
+                return Objects.requireNonNull(ep.cache.get(connection.fingerprint, cacheMissFunction));
             } catch (RuntimeException e) { // Propagated from cacheMissFunction
                 // Exception was thrown when creating a new instance.
                 final Throwable cause = e.getCause();
@@ -915,6 +1386,26 @@ public class Openstack {
             }
         }
 
+        /**
+         * Get Openstack client for the connection if it is instantiated already.
+         */
+        public static @CheckForNull Openstack getIfPresent(@Nonnull Connection connection) {
+            return ExtensionList.lookup(FactoryEP.class).get(0).cache.getIfPresent(connection.fingerprint);
+        }
+
+        /**
+         * Discard Openstack client of the connection, so it is authenticated again on next use.
+         */
+        public static void invalidate(@Nonnull Connection connection) {
+            ExtensionList.lookup(FactoryEP.class).get(0).cache.invalidate(connection.fingerprint);
+        }
+
+        /*package*/ static void invalidate(@Nonnull Openstack openstack) {
+            if (Jenkins.getInstanceOrNull() == null) return; // Not instantiated by factory
+
+            ExtensionList.lookup(FactoryEP.class).get(0).cache.asMap().values().remove(openstack);
+        }
+
         @SuppressWarnings("deprecation")
         public static @Nonnull FactoryEP replace(@Nonnull FactoryEP factory) {
             ExtensionList<Openstack.FactoryEP> lookup = ExtensionList.lookup(Openstack.FactoryEP.class);
@@ -930,6 +1421,26 @@ public class Openstack {
         }
     }
 
+    /**
+     * Connection details with the fingerprint computed, so they can be kept by the caller for repeated lookups.
+     */
+    @Restricted(NoExternalUse.class)
+    public static final class Connection {
+        private final @Nonnull String endPointUrl;
+        private final boolean ignoreSsl;
+        private final @Nonnull OpenstackCredential auth;
+        private final @CheckForNull String region;
+        private final @Nonnull String fingerprint;
+
+        public Connection(@Nonnull String endPointUrl, boolean ignoreSsl, @Nonnull OpenstackCredential auth, @CheckForNull String region) {
+            this.endPointUrl = endPointUrl;
+            this.ignoreSsl = ignoreSsl;
+            this.auth = auth;
+            this.region = region;
+            this.fingerprint = getCloudConnectionFingerprint(endPointUrl, ignoreSsl, auth, region);
+        }
+    }
+
     /**
      * Get a string unique per cloud connection.
      *
@@ -963,38 +1474,176 @@ public class Openstack {
     /**
      * Abstract away the fact client can not be shared between threads and the implementation details for different
      * versions of keystone.
+     *
+     * openstack4j binds the session to the thread that created it, so the client is reused per thread for as long as it
+     * remains the current session of that thread. Clients created by other code running on the same thread (other
+     * clouds, form validation) replace the current session so such a client is recreated on the next use.
+     *
+     * The token is renewed in the background once it is about to expire, callers keep using the old one meanwhile.
+     * Only when it has expired already, callers wait for the renewal. Concurrent renewals are collapsed into one.
      */
-    private static abstract class ClientProvider {
+    @VisibleForTesting
+    /*package*/ static abstract class ClientProvider {
+        private final ThreadLocal<Session> sessions = new ThreadLocal<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final @CheckForNull Supplier<OSClient<?>> authenticator;
+        private final @Nonnull Executor renewer;
+
+        @GuardedBy("this")
+        private @CheckForNull CompletableFuture<Void> renewal;
+        @GuardedBy("this")
+        private long lastRenewalFailure;
+
+        protected ClientProvider(@CheckForNull Supplier<OSClient<?>> authenticator, @Nonnull Executor renewer) {
+            this.authenticator = authenticator;
+            this.renewer = renewer;
+        }
+
         /**
-         * Reuse auth session between different threads creating separate client for every use.
+         * Reuse auth session between different threads creating separate client for every thread.
          */
-        public abstract @Nonnull OSClient<?> get();
+        public @Nonnull OSClient<?> get() {
+            renewIfNeeded();
+
+            Object auth = getAuth();
+            Session cached = sessions.get();
+            if (cached != null && cached.auth == auth && OSClientSession.getCurrent() == cached.client) {
+                hits.incrementAndGet();
+                return cached.client;
+            }
+
+            misses.incrementAndGet();
+            OSClient<?> client = create();
+            sessions.set(new Session(client, auth));
+            return client;
+        }
+
+        /*package*/ long getHits() {
+            return hits.get();
+        }
+
+        /*package*/ long getMisses() {
+            return misses.get();
+        }
+
+        private void renewIfNeeded() {
+            if (authenticator == null) return;
+            Date expires = getExpires();
+            if (expires == null) return;
+
+            long remaining = expires.getTime() - System.currentTimeMillis();
+            if (remaining > tokenRenewalAhead) return;
+
+            CompletableFuture<Void> renewing = renewAsync(remaining <= 0);
+            if (renewing == null || remaining > 0) return; // Keep using the old token until renewed
+
+            try {
+                renewing.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt(); // Reset interrupt flag
+                throw new ActionFailed("Interrupted", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new ActionFailed("Unable to renew token", cause);
+            }
+        }
+
+        private synchronized @CheckForNull CompletableFuture<Void> renewAsync(boolean expired) {
+            if (renewal != null) return renewal;
+            if (!expired && System.currentTimeMillis() - lastRenewalFailure < tokenRenewalRetry) return null;
+
+            CompletableFuture<Void> renewing = renewal = new CompletableFuture<>();
+            renewer.execute(() -> {
+                try {
+                    update(Objects.requireNonNull(authenticator).get());
+                    debug("Openstack token renewed");
+                    renewing.complete(null);
+                } catch (RuntimeException | Error ex) {
+                    LOGGER.log(Level.WARNING, "Unable to renew Openstack token", ex);
+                    synchronized (this) {
+                        lastRenewalFailure = System.currentTimeMillis();
+                    }
+                    renewing.completeExceptionally(ex);
+                } finally {
+                    synchronized (this) {
+                        renewal = null;
+                    }
+                }
+            });
+            return renewing;
+        }
+
+        /**
+         * Create new client bound to current thread.
+         */
+        protected abstract @Nonnull OSClient<?> create();
+
+        /**
+         * Authentication the clients are created from. Identity changes when renewed.
+         */
+        protected abstract @CheckForNull Object getAuth();
+
+        /**
+         * Expiry of the current token, if known.
+         */
+        protected abstract @CheckForNull Date getExpires();
+
+        /**
+         * Replace authentication by the one of freshly authenticated client.
+         */
+        protected abstract void update(@Nonnull OSClient<?> client);
 
         public abstract @Nonnull String getInfo();
 
-        private static ClientProvider get(OSClient<?> client, String region, Config config) {
-            if (client instanceof OSClient.OSClientV2) return new SessionClientV2Provider((OSClient.OSClientV2) client, region, config);
-            if (client instanceof OSClient.OSClientV3) return new SessionClientV3Provider((OSClient.OSClientV3) client, region, config);
+        private static ClientProvider get(OSClient<?> client, String region, Config config, Executor renewer, Supplier<OSClient<?>> authenticator) {
+            if (client instanceof OSClient.OSClientV2) return new SessionClientV2Provider((OSClient.OSClientV2) client, region, config, renewer, authenticator);
+            if (client instanceof OSClient.OSClientV3) return new SessionClientV3Provider((OSClient.OSClientV3) client, region, config, renewer, authenticator);
 
             throw new AssertionError(
                     "Unsupported openstack4j client " + client.getClass().getName()
             );
         }
 
+        private static final class Session {
+            private final @Nonnull OSClient<?> client;
+            private final @CheckForNull Object auth;
+
+            private Session(@Nonnull OSClient<?> client, @CheckForNull Object auth) {
+                this.client = client;
+                this.auth = auth;
+            }
+        }
+
         private static class SessionClientV2Provider extends ClientProvider {
-            protected final Access storage;
+            protected volatile Access storage;
             protected final String region;
             protected final Config config;
-            private SessionClientV2Provider(OSClient.OSClientV2 toStore, String usedRegion, Config clientConfig) {
+            private SessionClientV2Provider(OSClient.OSClientV2 toStore, String usedRegion, Config clientConfig, Executor renewer, Supplier<OSClient<?>> authenticator) {
+                super(authenticator, renewer);
                 storage = toStore.getAccess();
                 region = usedRegion;
                 config = clientConfig;
             }
 
-            public @Nonnull OSClient<?> get() {
+            protected @Nonnull OSClient<?> create() {
                 return OSFactory.clientFromAccess(storage, config).useRegion(region);
             }
 
+            @Override protected @CheckForNull Object getAuth() {
+                return storage;
+            }
+
+            @Override protected @CheckForNull Date getExpires() {
+                Access access = storage;
+                return access.getToken() == null ? null : access.getToken().getExpires();
+            }
+
+            @Override protected void update(@Nonnull OSClient<?> client) {
+                storage = ((OSClient.OSClientV2) client).getAccess();
+            }
+
             @Override
             public @Nonnull String getInfo() {
                 StringBuilder sb = new StringBuilder();
@@ -1009,19 +1658,32 @@ public class Openstack {
         }
 
         private static class SessionClientV3Provider extends ClientProvider {
-            private final Token storage;
+            private volatile Token storage;
             private final String region;
             protected final Config config;
-            private SessionClientV3Provider(OSClient.OSClientV3 toStore, String usedRegion, Config clientConfig) {
+            private SessionClientV3Provider(OSClient.OSClientV3 toStore, String usedRegion, Config clientConfig, Executor renewer, Supplier<OSClient<?>> authenticator) {
+                super(authenticator, renewer);
                 storage = toStore.getToken();
                 region = usedRegion;
                 config = clientConfig;
             }
 
-            public @Nonnull OSClient<?> get() {
+            protected @Nonnull OSClient<?> create() {
                 return OSFactory.clientFromToken(storage, config).useRegion(region);
             }
 
+            @Override protected @CheckForNull Object getAuth() {
+                return storage;
+            }
+
+            @Override protected @CheckForNull Date getExpires() {
+                return storage.getExpires();
+            }
+
+            @Override protected void update(@Nonnull OSClient<?> client) {
+                storage = ((OSClient.OSClientV3) client).getToken();
+            }
+
             @Override
             public @Nonnull String getInfo() {
                 // TODO version and enabled does not seem to be ever set and printing anything is pointless without it
@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.compute.AbsoluteLimit;
+import org.openstack4j.model.compute.Flavor;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Project quota left for provisioning, so machines that would not fit are not attempted at all.
+ *
+ * Nova absolute limits are fetched at most once per {@link #staleness} and the resources of machines planned or booting
+ * are subtracted locally, until limits fetched after the boot completed reflect them. Machines are reserved already when
+ * planned, so planning rounds in quick succession do not hand out the same quota. Resources reserved while provisioning
+ * a planned machine are covered by its reservation. When the limits can not be obtained, provisioning is not restricted.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+public final class QuotaTracker {
+
+    /*package*/ static long staleness = Long.getLong(QuotaTracker.class.getName() + ".staleness", 30_000);
+
+    // Reservation of the planned machine being provisioned by the thread
+    private static final ThreadLocal<Reservation> provisioning = new ThreadLocal<>();
+
+    private final @Nonnull Supplier<AbsoluteLimit> loader;
+
+    @GuardedBy("this")
+    private @CheckForNull AbsoluteLimit limits;
+    @GuardedBy("this")
+    private long fetchedAt;
+    @GuardedBy("this")
+    private final List<Reservation> reservations = new ArrayList<>();
+
+    /*package*/ QuotaTracker(@Nonnull Supplier<AbsoluteLimit> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Get quota left for provisioning, refreshing the limits when outdated.
+     *
+     * @param flavors Flavors indexed by id, to resolve the resources needed by the machines.
+     */
+    /*package*/ @Nonnull Headroom getHeadroom(@Nonnull Map<String, ? extends Flavor> flavors) {
+        boolean outdated;
+        synchronized (this) {
+            outdated = limits == null || System.currentTimeMillis() - fetchedAt > staleness;
+        }
+        if (outdated) {
+            // Not to block reservations while waiting for Nova
+            long requestedAt = System.currentTimeMillis();
+            AbsoluteLimit fetched = loader.get();
+            synchronized (this) {
+                if (limits == null || requestedAt >= fetchedAt) {
+                    limits = fetched;
+                    fetchedAt = requestedAt;
+                    // Completed before the limits were requested, so they are accounted for already
+                    reservations.removeIf(r -> r.completedAt != 0 && r.completedAt <= requestedAt);
+                }
+            }
+        }
+
+        synchronized (this) {
+            assert limits != null;
+            Headroom headroom = new Headroom(this, flavors, limits);
+            for (Reservation r : reservations) {
+                headroom.subtract(r.instances, r.cores, r.ram, r.floatingIps);
+            }
+            return headroom;
+        }
+    }
+
+    /**
+     * Account for server about to be booted.
+     *
+     * @param flavor Flavor of the server, resolved only when needed. Null if unknown.
+     *
+     * The reservation is to be completed once the boot is over, successful or not.
+     */
+    /*package*/ @Nonnull Reservation reserveServer(@Nonnull Supplier<Flavor> flavor) {
+        if (isCovered()) return new Reservation(0, 0, 0, 0);
+        synchronized (this) {
+            if (limits == null) return new Reservation(1, 0, 0, 0); // Not needed until limits are used
+        }
+        Flavor f = flavor.get();
+        return reserve(new Reservation(1, f == null ? 0 : f.getVcpus(), f == null ? 0 : f.getRam(), 0));
+    }
+
+    /**
+     * Account for floating IP about to be allocated.
+     *
+     * The reservation is to be completed once the allocation is over, successful or not.
+     */
+    /*package*/ @Nonnull Reservation reserveFloatingIp() {
+        if (isCovered()) return new Reservation(0, 0, 0, 0);
+        return reserve(new Reservation(0, 0, 0, 1));
+    }
+
+    // Provisioning of planned machine is in progress on this thread
+    private boolean isCovered() {
+        Reservation planned = provisioning.get();
+        return planned != null && planned.getTracker() == this;
+    }
+
+    private synchronized @Nonnull Reservation reserve(@Nonnull Reservation reservation) {
+        if (limits == null) return reservation; // Not needed until limits are used
+
+        // Anything completed this long ago is reflected by the limits refreshed before next use
+        long threshold = System.currentTimeMillis() - staleness;
+        reservations.removeIf(r -> r.completedAt != 0 && r.completedAt < threshold);
+        reservations.add(reservation);
+        return reservation;
+    }
+
+    public final class Reservation {
+        private final int instances;
+        private final int cores;
+        private final int ram;
+        private final int floatingIps;
+        @GuardedBy("QuotaTracker.this")
+        private long completedAt;
+
+        private Reservation(int instances, int cores, int ram, int floatingIps) {
+            this.instances = instances;
+            this.cores = cores;
+            this.ram = ram;
+            this.floatingIps = floatingIps;
+        }
+
+        private @Nonnull QuotaTracker getTracker() {
+            return QuotaTracker.this;
+        }
+
+        /*package*/ void complete() {
+            synchronized (QuotaTracker.this) {
+                if (completedAt == 0) {
+                    completedAt = System.currentTimeMillis();
+                }
+            }
+        }
+
+        /**
+         * Provision the planned machine, resources reserved by the provisioning thread meanwhile are covered by this reservation.
+         *
+         * The reservation is completed once the provisioning is over, successful or not.
+         */
+        public <T> T provision(@Nonnull Supplier<T> task) {
+            Reservation outer = QuotaTracker.provisioning.get();
+            QuotaTracker.provisioning.set(this);
+            try {
+                return task.get();
+            } finally {
+                if (outer == null) {
+                    QuotaTracker.provisioning.remove();
+                } else {
+                    QuotaTracker.provisioning.set(outer);
+                }
+                complete();
+            }
+        }
+
+        /**
+         * Release the reservation of machine that was planned but will not be provisioned.
+         */
+        public void cancel() {
+            synchronized (QuotaTracker.this) {
+                reservations.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the quota left, to be consumed while planning machines to provision.
+     */
+    @NotThreadSafe
+    public static final class Headroom {
+        private final @Nonnull QuotaTracker tracker;
+        private final @Nonnull Map<String, ? extends Flavor> flavors;
+        private long instances;
+        private long cores;
+        private long ram;
+        private long floatingIps;
+
+        private Headroom(@Nonnull QuotaTracker tracker, @Nonnull Map<String, ? extends Flavor> flavors, @Nonnull AbsoluteLimit limits) {
+            this.tracker = tracker;
+            this.flavors = flavors;
+            instances = remaining(limits.getMaxTotalInstances(), limits.getTotalInstancesUsed());
+            cores = remaining(limits.getMaxTotalCores(), limits.getTotalCoresUsed());
+            ram = remaining(limits.getMaxTotalRAMSize(), limits.getTotalRAMUsed());
+            // Not reported by newer Nova microversions, treat missing as unlimited
+            floatingIps = limits.getMaxTotalFloatingIps() == 0
+                    ? Long.MAX_VALUE
+                    : remaining(limits.getMaxTotalFloatingIps(), limits.getTotalFloatingIpsUsed())
+            ;
+        }
+
+        private static long remaining(int max, int used) {
+            return max < 0 ? Long.MAX_VALUE : max - (long) used;
+        }
+
+        private void subtract(int instances, int cores, int ram, int floatingIps) {
+            this.instances -= instances;
+            this.cores -= cores;
+            this.ram -= ram;
+            this.floatingIps -= floatingIps;
+        }
+
+        /**
+         * Reserve quota for a machine if it fits.
+         *
+         * @param flavorId Flavor of the machine, only the number of instances is checked for unknown flavors.
+         * @param floatingIp Machine needs floating IP.
+         * @return Reservation to provision the machine with or to cancel, null if the machine does not fit.
+         */
+        public @CheckForNull Reservation take(@CheckForNull String flavorId, boolean floatingIp) {
+            Flavor flavor = flavorId == null ? null : flavors.get(flavorId);
+            int needCores = flavor == null ? 0 : flavor.getVcpus();
+            int needRam = flavor == null ? 0 : flavor.getRam();
+            int needFips = floatingIp ? 1 : 0;
+            if (instances < 1 || cores < needCores || ram < needRam || floatingIps < needFips) return null;
+
+            subtract(1, needCores, needRam, needFips);
+            return tracker.reserve(tracker.new Reservation(1, needCores, needRam, needFips));
+        }
+    }
+}
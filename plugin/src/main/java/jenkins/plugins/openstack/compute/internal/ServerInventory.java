@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.compute.Server;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory snapshot of servers owned by this Jenkins instance in a single cloud.
+ *
+ * The snapshot is kept up to date using Nova <code>changes-since</code> queries so the full (and expensive) listing
+ * is only needed on first use and periodically after that, to recover from anything the deltas could have missed.
+ * Concurrent refreshes are coalesced so callers asking for a snapshot at the same time share one API call.
+ */
+@Restricted(NoExternalUse.class)
+@ThreadSafe
+/*package*/ final class ServerInventory {
+    private static final Logger LOGGER = Logger.getLogger(ServerInventory.class.getName());
+
+    // Period after which the delta queries are replaced by full listing
+    /*package*/ static long fullRefreshPeriod = Long.getLong(
+            ServerInventory.class.getName() + ".fullRefreshPeriod", TimeUnit.MINUTES.toMillis(10)
+    );
+
+    // Overlap of subsequent delta queries tolerating clock skew between Jenkins and Nova and second precision of the query
+    /*package*/ static long deltaOverlap = Long.getLong(
+            ServerInventory.class.getName() + ".deltaOverlap", TimeUnit.SECONDS.toMillis(30)
+    );
+
+    private final @Nonnull Supplier<List<? extends Server>> fullLister;
+    private final @Nonnull Function<String, List<? extends Server>> changesLister;
+    private final @Nonnull Predicate<Server> owned;
+
+    private final @Nonnull AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final @Nonnull Object refreshLock = new Object();
+
+    // Local changes made while the refresh is running, to be applied on its result. Null when not refreshing.
+    @GuardedBy("this")
+    private @CheckForNull List<UnaryOperator<Snapshot>> changedDuringRefresh;
+
+    /**
+     * @param fullLister List all servers (in detail) to track.
+     * @param changesLister List servers (in detail) changed since given ISO 8601 time, including the deleted ones.
+     * @param owned Predicate to determine servers to track.
+     */
+    /*package*/ ServerInventory(
+            @Nonnull Supplier<List<? extends Server>> fullLister,
+            @Nonnull Function<String, List<? extends Server>> changesLister,
+            @Nonnull Predicate<Server> owned
+    ) {
+        this.fullLister = fullLister;
+        this.changesLister = changesLister;
+        this.owned = owned;
+    }
+
+    /**
+     * Get servers tracked.
+     *
+     * @param maxStaleness Maximal age of the snapshot in milliseconds, 0 to get data fetched after this call was made.
+     */
+    public @Nonnull List<Server> get(@Nonnegative long maxStaleness) {
+        final long requested = System.currentTimeMillis();
+
+        Snapshot current = snapshot.get();
+        if (current != null && current.isFresh(requested, maxStaleness)) return current.list();
+
+        synchronized (refreshLock) {
+            // Some other thread might have refreshed it meanwhile
+            current = snapshot.get();
+            if (current != null && current.isFresh(requested, maxStaleness)) return current.list();
+
+            synchronized (this) {
+                changedDuringRefresh = new ArrayList<>();
+            }
+            try {
+                Snapshot refreshed = refresh(current);
+                synchronized (this) {
+                    // The listing might have been taken before these changes were made, so apply them again
+                    for (UnaryOperator<Snapshot> change : changedDuringRefresh) {
+                        refreshed = change.apply(refreshed);
+                    }
+                    snapshot.set(refreshed);
+                }
+                return refreshed.list();
+            } finally {
+                synchronized (this) {
+                    changedDuringRefresh = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Track server right away, not waiting for the next refresh.
+     */
+    public void put(@Nonnull Server server) {
+        if (!Openstack.isOccupied(server) || !owned.test(server)) return;
+
+        change(s -> s.with(server));
+    }
+
+    /**
+     * Stop tracking server right away, not waiting for the next refresh.
+     */
+    public void remove(@Nonnull String serverId) {
+        change(s -> s.without(serverId));
+    }
+
+    private synchronized void change(@Nonnull UnaryOperator<Snapshot> change) {
+        snapshot.updateAndGet(s -> s == null ? null : change.apply(s));
+        if (changedDuringRefresh != null) {
+            changedDuringRefresh.add(change);
+        }
+    }
+
+    private @Nonnull Snapshot refresh(@CheckForNull Snapshot current) {
+        final long started = System.currentTimeMillis();
+
+        if (current == null || started - current.fullAt > fullRefreshPeriod) {
+            Map<String, Server> servers = new HashMap<>();
+            for (Server server : fullLister.get()) {
+                if (Openstack.isOccupied(server) && owned.test(server)) {
+                    servers.put(server.getId(), server);
+                }
+            }
+            LOGGER.log(Level.FINE, "Server inventory fully refreshed with {0} servers", servers.size());
+            return new Snapshot(servers, started, started);
+        }
+
+        String since = Instant.ofEpochMilli(current.takenAt - deltaOverlap).truncatedTo(ChronoUnit.SECONDS).toString();
+        List<? extends Server> changes = changesLister.apply(since);
+
+        Map<String, Server> servers = new HashMap<>(current.servers);
+        for (Server server : changes) {
+            // Deleted servers are reported by changes-since as well
+            if (Openstack.isOccupied(server) && owned.test(server)) {
+                servers.put(server.getId(), server);
+            } else {
+                servers.remove(server.getId());
+            }
+        }
+        LOGGER.log(Level.FINE, "Server inventory updated with {0} changes since {1}", new Object[] {changes.size(), since});
+        return new Snapshot(servers, started, current.fullAt);
+    }
+
+    private static final class Snapshot {
+        private final @Nonnull Map<String, Server> servers;
+        // Time the query producing the data was started, so no changes made before that are missed
+        private final long takenAt;
+        private final long fullAt;
+
+        private Snapshot(@Nonnull Map<String, Server> servers, long takenAt, long fullAt) {
+            this.servers = Collections.unmodifiableMap(servers);
+            this.takenAt = takenAt;
+            this.fullAt = fullAt;
+        }
+
+        private boolean isFresh(long requested, long maxStaleness) {
+            return takenAt > requested - maxStaleness;
+        }
+
+        private @Nonnull List<Server> list() {
+            return new ArrayList<>(servers.values());
+        }
+
+        private @Nonnull Snapshot with(@Nonnull Server server) {
+            Map<String, Server> copy = new HashMap<>(servers);
+            copy.put(server.getId(), server);
+            return new Snapshot(copy, takenAt, fullAt);
+        }
+
+        private @Nonnull Snapshot without(@Nonnull String serverId) {
+            if (!servers.containsKey(serverId)) return this;
+
+            Map<String, Server> copy = new HashMap<>(servers);
+            copy.remove(serverId);
+            return new Snapshot(copy, takenAt, fullAt);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.openstack.compute.domain.NovaServer;
+import org.openstack4j.openstack.compute.functions.ToActionResponseFunction;
+import org.openstack4j.openstack.compute.internal.BaseComputeServices;
+import org.openstack4j.openstack.internal.BaseOpenStackService;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nova server tags, not exposed by openstack4j.
+ *
+ * Tags require compute API microversion 2.26 that is requested explicitly for every call here. Operates on the session
+ * current for the calling thread, same as the openstack4j services do.
+ */
+@Restricted(NoExternalUse.class)
+/*package*/ class ServerTags extends BaseComputeServices {
+    /*package*/ static final String MICROVERSION_HEADER = "X-OpenStack-Nova-API-Version";
+    /*package*/ static final String MICROVERSION = "2.26";
+
+    /**
+     * List servers (in detail) carrying all the tags from filtering params.
+     */
+    /*package*/ @Nonnull List<? extends Server> list(@Nonnull Map<String, String> filteringParams) {
+        BaseOpenStackService.Invocation<NovaServer.Servers> invocation = get(NovaServer.Servers.class, uri("/servers/detail"))
+                .header(MICROVERSION_HEADER, MICROVERSION)
+        ;
+        for (Map.Entry<String, String> param : filteringParams.entrySet()) {
+            invocation = invocation.param(param.getKey(), param.getValue());
+        }
+        NovaServer.Servers servers = invocation.execute();
+        if (servers == null) throw new IllegalStateException("Unable to list servers by tag");
+        return servers.getList();
+    }
+
+    /**
+     * Add tag to the server preserving those it already has.
+     *
+     * Single idempotent request, so concurrent taggers do not overwrite each other as they would replacing the whole set.
+     * Setting the tag in the create request would save even this call, but needs microversion 2.52 that changes the
+     * create request and response in ways openstack4j does not understand.
+     */
+    /*package*/ @Nonnull ActionResponse add(@Nonnull String serverId, @Nonnull String tag) {
+        // Body-less PUT, the OkHttp connector sends it as empty
+        return ToActionResponseFunction.INSTANCE.apply(put(Void.class, uri("/servers/%s/tags/%s", serverId, tag))
+                .header(MICROVERSION_HEADER, MICROVERSION)
+                .executeWithResponse()
+        );
+    }
+}
@@ -0,0 +1,1073 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jenkins.plugins.openstack.compute.auth.OpenstackCredentialv3;
+import org.junit.rules.ExternalResource;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-process stand-in of the OpenStack HTTP APIs, to exercise the real client end to end without a cloud.
+ *
+ * Implements the subset of Keystone v3, Nova, Neutron, Glance v2 and Cinder v3 the plugin uses. Servers become ACTIVE
+ * after {@link #bootTime(Latency)}, every call is delayed by the latency configured for its operation and fails with
+ * the configured probability. Operations are named as in {@link jenkins.plugins.openstack.compute.internal.ApiMetrics},
+ * <code>nova.servers.boot</code> for instance, and the calls are counted per operation.
+ *
+ * Use as a JUnit rule, or {@link #start()} and {@link #close()} it manually.
+ */
+@ThreadSafe
+public class FakeOpenstack extends ExternalResource implements Closeable {
+
+    public static final String REGION = "RegionOne";
+    public static final String PROJECT_ID = "c0ffee00c0ffee00c0ffee00c0ffee00";
+    public static final String NETWORK = "private";
+    public static final String FIP_POOL = "public";
+    public static final String IMAGE = "fake-image";
+    public static final String FLAVOR = "m1.small";
+    public static final String KEY_PAIR = "jenkins";
+    public static final String VOLUME_SNAPSHOT = "fake-snapshot";
+    /**
+     * Wildcard operation to configure failures or latency of all operations.
+     */
+    public static final String ANY = "*";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern VERSION = Pattern.compile("v\\d+(\\.\\d+)?");
+    // Deleted servers are reported by changes-since queries for a while
+    private static final long DELETED_RETENTION = Duration.ofMinutes(10).toMillis();
+
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+
+    private volatile @Nonnull Latency bootTime = Latency.fixed(0);
+    private volatile double bootFailureRate;
+    private volatile @Nonnull Duration tokenLifetime = Duration.ofHours(1);
+    private volatile int maxInstances = Integer.MAX_VALUE;
+    private volatile int maxCores = Integer.MAX_VALUE;
+    private volatile int maxFloatingIps = Integer.MAX_VALUE;
+
+    private final Map<String, Flavor> flavors = new LinkedHashMap<>();
+    private final Map<String, Network> networks = new LinkedHashMap<>();
+    private final String imageId = UUID.randomUUID().toString();
+    private final String snapshotId = UUID.randomUUID().toString();
+    private final String routerId = UUID.randomUUID().toString();
+
+    // In order of creation for paging
+    @GuardedBy("this")
+    private final Map<String, FakeServer> servers = new LinkedHashMap<>();
+    @GuardedBy("this")
+    private final Map<String, Port> ports = new HashMap<>();
+    @GuardedBy("this")
+    private final Map<String, FloatingIp> fips = new LinkedHashMap<>();
+
+    private HttpServer http;
+    private ExecutorService executor;
+
+    public FakeOpenstack() {
+        for (Flavor flavor : Arrays.asList(
+                new Flavor("1", "m1.tiny", 1, 512, 1),
+                new Flavor("2", FLAVOR, 1, 2048, 20),
+                new Flavor("3", "m1.medium", 2, 4096, 40),
+                new Flavor("4", "m1.large", 4, 8192, 80)
+        )) {
+            flavors.put(flavor.id, flavor);
+        }
+        for (Network network : Arrays.asList(new Network(NETWORK, "10.0", false), new Network(FIP_POOL, "42.0", true))) {
+            networks.put(network.id, network);
+        }
+    }
+
+    @Override
+    protected void before() throws IOException {
+        start();
+    }
+
+    @Override
+    protected void after() {
+        close();
+    }
+
+    public void start() throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "FakeOpenstack");
+            thread.setDaemon(true);
+            return thread;
+        });
+        http.setExecutor(executor);
+        http.createContext("/", this::handle);
+        http.start();
+    }
+
+    @Override
+    public void close() {
+        if (http != null) {
+            http.stop(0);
+            executor.shutdownNow();
+            http = null;
+        }
+    }
+
+    /**
+     * Keystone v3 URL to configure the cloud with.
+     */
+    public @Nonnull String getEndpoint() {
+        return getBaseUrl() + "/identity/v3";
+    }
+
+    private @Nonnull String getBaseUrl() {
+        if (http == null) throw new IllegalStateException("Not started");
+        return "http://" + http.getAddress().getHostString() + ":" + http.getAddress().getPort();
+    }
+
+    /**
+     * Credential accepted by the fake, any other is accepted as well.
+     */
+    public @Nonnull OpenstackCredentialv3 getCredential() {
+        return new OpenstackCredentialv3(
+                CredentialsScope.SYSTEM, "fake-openstack", "", "jenkins", "Default", "jenkins", "Default", "secret"
+        );
+    }
+
+    public @Nonnull String getImageId() {
+        return imageId;
+    }
+
+    /**
+     * Id of the network of given name.
+     */
+    public static @Nonnull String networkId(@Nonnull String name) {
+        return Network.idOf(name);
+    }
+
+    // Configuration
+
+    /**
+     * Delay calls of the operation, or of all operations without latency configured for {@link #ANY}.
+     */
+    public @Nonnull FakeOpenstack latency(@Nonnull String operation, @Nonnull Latency latency) {
+        latencies.put(operation, latency);
+        return this;
+    }
+
+    /**
+     * Fail calls of the operation, or of all operations for {@link #ANY}, with given probability.
+     *
+     * @param status HTTP status to respond with, 0 to drop the connection without response.
+     */
+    public @Nonnull FakeOpenstack fail(@Nonnull String operation, int status, double probability) {
+        if (probability <= 0) {
+            failures.remove(operation);
+        } else {
+            failures.put(operation, new Failure(status, probability));
+        }
+        return this;
+    }
+
+    /**
+     * Time it takes for the server to become ACTIVE.
+     */
+    public @Nonnull FakeOpenstack bootTime(@Nonnull Latency bootTime) {
+        this.bootTime = bootTime;
+        return this;
+    }
+
+    /**
+     * Probability the server ends up in ERROR state instead of ACTIVE.
+     */
+    public @Nonnull FakeOpenstack bootFailureRate(double rate) {
+        this.bootFailureRate = rate;
+        return this;
+    }
+
+    public @Nonnull FakeOpenstack tokenLifetime(@Nonnull Duration lifetime) {
+        this.tokenLifetime = lifetime;
+        return this;
+    }
+
+    public @Nonnull FakeOpenstack maxInstances(@Nonnegative int max) {
+        this.maxInstances = max;
+        return this;
+    }
+
+    public @Nonnull FakeOpenstack maxCores(@Nonnegative int max) {
+        this.maxCores = max;
+        return this;
+    }
+
+    public @Nonnull FakeOpenstack maxFloatingIps(@Nonnegative int max) {
+        this.maxFloatingIps = max;
+        return this;
+    }
+
+    /**
+     * Create ACTIVE servers, those not booted by Jenkins unless the metadata says otherwise.
+     */
+    public synchronized void addServers(@Nonnegative int count, @Nonnull Map<String, String> metadata) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            FakeServer server = new FakeServer(
+                    "synthetic-" + servers.size(), flavors.get("2"), imageId, metadata, "nova", null, now, now, false
+            );
+            server.ports.add(createPort(networks.get(Network.idOf(NETWORK)), server.id));
+            servers.put(server.id, server);
+        }
+    }
+
+    // Inspection
+
+    public long getCalls(@Nonnull String operation) {
+        AtomicLong count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getCalls() {
+        return calls.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public @Nonnull Map<String, Long> getCallsByOperation() {
+        Map<String, Long> ret = new HashMap<>();
+        calls.forEach((op, count) -> ret.put(op, count.get()));
+        return ret;
+    }
+
+    public void resetCalls() {
+        calls.clear();
+    }
+
+    /**
+     * Number of servers that are not deleted.
+     */
+    public synchronized int getServerCount() {
+        return (int) servers.values().stream().filter(s -> s.deletedAt == 0).count();
+    }
+
+    public synchronized int getFloatingIpCount() {
+        return fips.size();
+    }
+
+    // Request handling
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Request request = new Request(exchange);
+            Call call = route(request);
+            calls.computeIfAbsent(call.op, op -> new AtomicLong()).incrementAndGet();
+
+            Latency latency = latencies.getOrDefault(call.op, latencies.get(ANY));
+            if (latency != null) {
+                long delay = latency.next(ThreadLocalRandom.current());
+                if (delay > 0) Thread.sleep(delay);
+            }
+
+            Failure failure = failures.getOrDefault(call.op, failures.get(ANY));
+            Response response;
+            if (failure != null && ThreadLocalRandom.current().nextDouble() < failure.probability) {
+                if (failure.status == 0) return; // Connection closed with no response
+                response = error(failure.status, "Injected failure of " + call.op);
+            } else if (!call.op.equals("keystone.tokens.create") && !isAuthenticated(request)) {
+                response = error(401, "The request you have made requires authentication.");
+            } else {
+                response = call.action.call();
+            }
+            send(exchange, response);
+        } catch (Exception ex) {
+            send(exchange, error(500, ex.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isAuthenticated(@Nonnull Request request) {
+        String token = request.exchange.getRequestHeaders().getFirst("X-Auth-Token");
+        if (token == null) return false;
+        Long expires = tokens.get(token);
+        return expires != null && expires > System.currentTimeMillis();
+    }
+
+    private void send(@Nonnull HttpExchange exchange, @Nonnull Response response) throws IOException {
+        response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        if (response.body == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+
+        byte[] bytes = MAPPER.writeValueAsBytes(response.body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private @Nonnull Call route(@Nonnull Request r) {
+        List<String> p = r.path;
+        switch (r.service) {
+            case "identity":
+                if (r.is("POST", "auth", "tokens")) return new Call("keystone.tokens.create", this::createToken);
+            break;
+            case "compute":
+                if (r.is("GET", "servers", "detail")) return new Call("nova.servers.list", () -> listServers(r));
+                if (r.is("POST", "servers")) return new Call("nova.servers.boot", () -> boot(r));
+                if (r.is("GET", "servers", null)) return new Call("nova.servers.get", () -> getServer(p.get(1)));
+                if (r.is("DELETE", "servers", null)) return new Call("nova.servers.delete", () -> deleteServer(p.get(1)));
+                if (r.is("GET", "servers", null, "tags")) return new Call("nova.servers.tags.get", () -> getTags(p.get(1)));
+                if (r.is("PUT", "servers", null, "tags")) return new Call("nova.servers.tags.update", () -> setTags(p.get(1), r));
+                if (r.is("PUT", "servers", null, "tags", null)) return new Call("nova.servers.tags.add", () -> addTag(p.get(1), p.get(3)));
+                if (r.is("GET", "flavors") || r.is("GET", "flavors", "detail")) return new Call("nova.flavors.list", this::listFlavors);
+                if (r.is("GET", "os-availability-zone") || r.is("GET", "os-availability-zone", "detail")) return new Call("nova.zones.list", this::listZones);
+                if (r.is("GET", "os-keypairs")) return new Call("nova.keypairs.list", this::listKeypairs);
+                if (r.is("GET", "limits")) return new Call("nova.limits.get", this::getLimits);
+            break;
+            case "network":
+                if (r.is("GET", "networks")) return new Call("neutron.networks.list", () -> listNetworks(r));
+                if (r.is("GET", "network-ip-availabilities")) return new Call("neutron.ipavailability.get", this::getIpAvailability);
+                if (r.is("GET", "routers")) return new Call("neutron.routers.list", this::listRouters);
+                if (r.is("GET", "ports")) return new Call("neutron.ports.list", () -> listPorts(r));
+                if (r.is("GET", "floatingips")) return new Call("neutron.floatingips.list", this::listFips);
+                if (r.is("POST", "floatingips")) return new Call("neutron.floatingips.create", () -> createFip(r));
+                if (r.is("GET", "floatingips", null)) return new Call("neutron.floatingips.get", () -> getFip(p.get(1)));
+                if (r.is("PUT", "floatingips", null)) return new Call("neutron.floatingips.associate", () -> updateFip(p.get(1), r));
+                if (r.is("DELETE", "floatingips", null)) return new Call("neutron.floatingips.delete", () -> deleteFip(p.get(1)));
+            break;
+            case "image":
+                if (r.is("GET", "images")) return new Call("glance.images.list", () -> listImages(r));
+                if (r.is("GET", "images", null)) return new Call("glance.images.get", () -> getImage(p.get(1)));
+            break;
+            case "volume":
+                if (r.is("GET", "snapshots") || r.is("GET", "snapshots", "detail")) return new Call("cinder.snapshots.list", this::listSnapshots);
+                if (r.is("GET", "snapshots", null)) return new Call("cinder.snapshots.get", () -> getSnapshot(p.get(1)));
+                if (r.is("PUT", "volumes", null)) return new Call("cinder.volumes.update", () -> updateVolume(p.get(1), r));
+            break;
+            default:
+        }
+        return new Call("unknown", () -> error(404, "No fake for " + r.method + " " + r.exchange.getRequestURI()));
+    }
+
+    // Keystone
+
+    private @Nonnull Response createToken() {
+        String token = UUID.randomUUID().toString().replace("-", "");
+        long now = System.currentTimeMillis();
+        long expires = now + tokenLifetime.toMillis();
+        tokens.put(token, expires);
+
+        String base = getBaseUrl();
+        List<Object> catalog = new ArrayList<>();
+        catalog.add(service("identity", "keystone", base + "/identity/v3"));
+        catalog.add(service("compute", "nova", base + "/compute/v2.1"));
+        catalog.add(service("network", "neutron", base + "/network"));
+        catalog.add(service("image", "glance", base + "/image"));
+        catalog.add(service("volumev3", "cinderv3", base + "/volume/v3/" + PROJECT_ID));
+
+        Map<String, Object> domain = map("id", "default", "name", "Default");
+        Map<String, Object> body = map("token", map(
+                "methods", Collections.singletonList("password"),
+                "issued_at", iso(now),
+                "expires_at", iso(expires),
+                "user", map("id", "fake-user", "name", "jenkins", "domain", domain),
+                "project", map("id", PROJECT_ID, "name", "jenkins", "domain", domain),
+                "roles", Collections.singletonList(map("id", "member", "name", "member")),
+                "catalog", catalog
+        ));
+        return new Response(201, body, Collections.singletonMap("X-Subject-Token", token));
+    }
+
+    private static @Nonnull Map<String, Object> service(String type, String name, String url) {
+        return map("id", name, "type", type, "name", name, "endpoints", Collections.singletonList(map(
+                "id", name + "-public", "interface", "public", "region", REGION, "region_id", REGION, "url", url
+        )));
+    }
+
+    // Nova
+
+    private synchronized @Nonnull Response listServers(@Nonnull Request r) {
+        long now = System.currentTimeMillis();
+        servers.values().removeIf(s -> s.deletedAt != 0 && now - s.deletedAt > DELETED_RETENTION);
+
+        String since = r.query.get("changes-since");
+        long sinceMillis = since == null ? 0 : Instant.parse(since).toEpochMilli();
+        Pattern name = r.query.containsKey("name") ? Pattern.compile(r.query.get("name")) : null;
+        List<String> tags = r.query.containsKey("tags") ? Arrays.asList(r.query.get("tags").split(",")) : null;
+        int limit = r.query.containsKey("limit") ? Integer.parseInt(r.query.get("limit")) : Integer.MAX_VALUE;
+        String marker = r.query.get("marker");
+
+        List<Object> page = new ArrayList<>();
+        boolean afterMarker = marker == null;
+        for (FakeServer server : servers.values()) {
+            if (!afterMarker) {
+                afterMarker = server.id.equals(marker);
+                continue;
+            }
+            if (page.size() >= limit) break;
+
+            if (since != null) {
+                if (server.updated(now) < sinceMillis) continue;
+            } else if (server.deletedAt != 0) {
+                continue;
+            }
+            if (name != null && !name.matcher(server.name).find()) continue;
+            if (tags != null && !server.tags.containsAll(tags)) continue;
+
+            page.add(server.toJson(now));
+        }
+        return ok(map("servers", page));
+    }
+
+    private synchronized @Nonnull Response getServer(@Nonnull String id) {
+        FakeServer server = servers.get(id);
+        if (server == null || server.deletedAt != 0) return error(404, "Instance " + id + " could not be found.");
+        return ok(map("server", server.toJson(System.currentTimeMillis())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nonnull Response boot(@Nonnull Request r) throws IOException {
+        Map<String, Object> request = (Map<String, Object>) r.body().get("server");
+        Flavor flavor = flavors.get(String.valueOf(request.get("flavorRef")));
+        if (flavor == null) return error(400, "Flavor " + request.get("flavorRef") + " could not be found.");
+
+        long now = System.currentTimeMillis();
+        long activeAt = now + bootTime.next(ThreadLocalRandom.current());
+        boolean fail = ThreadLocalRandom.current().nextDouble() < bootFailureRate;
+
+        synchronized (this) {
+            List<FakeServer> live = servers.values().stream().filter(s -> s.deletedAt == 0).collect(Collectors.toList());
+            if (live.size() + 1 > maxInstances) {
+                return error(403, "Quota exceeded for instances: Requested 1, but already used " + live.size() + " of " + maxInstances + " instances");
+            }
+            int cores = live.stream().mapToInt(s -> s.flavor.vcpus).sum();
+            if (cores + flavor.vcpus > maxCores) {
+                return error(403, "Quota exceeded for cores: Requested " + flavor.vcpus + ", but already used " + cores + " of " + maxCores + " cores");
+            }
+
+            Map<String, String> metadata = new HashMap<>();
+            if (request.get("metadata") instanceof Map) {
+                ((Map<String, Object>) request.get("metadata")).forEach((k, v) -> metadata.put(k, String.valueOf(v)));
+            }
+            String image = request.get("imageRef") == null ? "" : String.valueOf(request.get("imageRef"));
+            String zone = request.get("availability_zone") == null ? "nova" : String.valueOf(request.get("availability_zone"));
+            FakeServer server = new FakeServer(
+                    String.valueOf(request.get("name")), flavor, image, metadata, zone, (String) request.get("key_name"), now, activeAt, fail
+            );
+
+            List<String> networkIds = new ArrayList<>();
+            if (request.get("networks") instanceof List) {
+                for (Map<String, Object> network : (List<Map<String, Object>>) request.get("networks")) {
+                    networkIds.add(String.valueOf(network.get("uuid")));
+                }
+            }
+            if (networkIds.isEmpty()) {
+                networkIds.add(Network.idOf(NETWORK));
+            }
+            for (String networkId : networkIds) {
+                Network network = networks.get(networkId);
+                if (network == null) return error(400, "Network " + networkId + " could not be found.");
+                server.ports.add(createPort(network, server.id));
+            }
+            servers.put(server.id, server);
+
+            return new Response(202, map("server", map("id", server.id, "links", Collections.emptyList(), "adminPass", "fake")));
+        }
+    }
+
+    private synchronized @Nonnull Response deleteServer(@Nonnull String id) {
+        FakeServer server = servers.get(id);
+        if (server == null || server.deletedAt != 0) return error(404, "Instance " + id + " could not be found.");
+
+        server.deletedAt = System.currentTimeMillis();
+        for (Port port : server.ports) {
+            ports.remove(port.id);
+            for (FloatingIp fip : fips.values()) {
+                if (port.id.equals(fip.portId)) {
+                    fip.portId = null;
+                }
+            }
+        }
+        return new Response(204, null);
+    }
+
+    private synchronized @Nonnull Response getTags(@Nonnull String id) {
+        FakeServer server = servers.get(id);
+        if (server == null || server.deletedAt != 0) return error(404, "Instance " + id + " could not be found.");
+        return ok(map("tags", new ArrayList<>(server.tags)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nonnull Response setTags(@Nonnull String id, @Nonnull Request r) throws IOException {
+        List<String> tags = (List<String>) r.body().get("tags");
+        synchronized (this) {
+            FakeServer server = servers.get(id);
+            if (server == null || server.deletedAt != 0) return error(404, "Instance " + id + " could not be found.");
+            server.tags.clear();
+            server.tags.addAll(tags);
+            return ok(map("tags", new ArrayList<>(server.tags)));
+        }
+    }
+
+    private synchronized @Nonnull Response addTag(@Nonnull String id, @Nonnull String tag) {
+        FakeServer server = servers.get(id);
+        if (server == null || server.deletedAt != 0) return error(404, "Instance " + id + " could not be found.");
+        if (server.tags.contains(tag)) return new Response(204, null);
+
+        server.tags.add(tag);
+        return new Response(201, null);
+    }
+
+    private @Nonnull Response listFlavors() {
+        return ok(map("flavors", flavors.values().stream().map(Flavor::toJson).collect(Collectors.toList())));
+    }
+
+    private @Nonnull Response listZones() {
+        return ok(map("availabilityZoneInfo", Collections.singletonList(
+                map("zoneName", "nova", "zoneState", map("available", true), "hosts", null)
+        )));
+    }
+
+    private @Nonnull Response listKeypairs() {
+        return ok(map("keypairs", Collections.singletonList(map("keypair", map(
+                "name", KEY_PAIR, "public_key", "ssh-rsa AAAAB3NzaC1yc2E fake", "fingerprint", "00:11:22:33:44:55:66:77:88:99:aa:bb:cc:dd:ee:ff"
+        )))));
+    }
+
+    private synchronized @Nonnull Response getLimits() {
+        List<FakeServer> live = servers.values().stream().filter(s -> s.deletedAt == 0).collect(Collectors.toList());
+        return ok(map("limits", map("rate", Collections.emptyList(), "absolute", map(
+                "maxTotalInstances", maxInstances == Integer.MAX_VALUE ? -1 : maxInstances,
+                "totalInstancesUsed", live.size(),
+                "maxTotalCores", maxCores == Integer.MAX_VALUE ? -1 : maxCores,
+                "totalCoresUsed", live.stream().mapToInt(s -> s.flavor.vcpus).sum(),
+                "maxTotalRAMSize", -1,
+                "totalRAMUsed", live.stream().mapToInt(s -> s.flavor.ram).sum(),
+                "maxTotalFloatingIps", maxFloatingIps == Integer.MAX_VALUE ? -1 : maxFloatingIps,
+                "totalFloatingIpsUsed", fips.size()
+        ))));
+    }
+
+    // Neutron
+
+    private @Nonnull Response listNetworks(@Nonnull Request r) {
+        String name = r.query.get("name");
+        String id = r.query.get("id");
+        return ok(map("networks", networks.values().stream()
+                .filter(n -> name == null || n.name.equals(name))
+                .filter(n -> id == null || n.id.equals(id))
+                .map(Network::toJson)
+                .collect(Collectors.toList())
+        ));
+    }
+
+    private synchronized @Nonnull Response getIpAvailability() {
+        List<Object> availabilities = new ArrayList<>();
+        for (Network network : networks.values()) {
+            long used = ports.values().stream().filter(p -> p.network == network).count();
+            availabilities.add(map(
+                    "network_id", network.id, "network_name", network.name, "tenant_id", PROJECT_ID,
+                    "total_ips", 65534, "used_ips", used,
+                    "subnet_ip_availability", Collections.singletonList(map(
+                            "subnet_id", network.subnetId, "subnet_name", network.name + "-subnet",
+                            "cidr", network.prefix + ".0.0/16", "ip_version", 4, "total_ips", 65534, "used_ips", used
+                    ))
+            ));
+        }
+        return ok(map("network_ip_availabilities", availabilities));
+    }
+
+    private @Nonnull Response listRouters() {
+        return ok(map("routers", Collections.singletonList(map(
+                "id", routerId, "name", "router", "status", "ACTIVE", "admin_state_up", true, "tenant_id", PROJECT_ID,
+                "external_gateway_info", map("network_id", Network.idOf(FIP_POOL))
+        ))));
+    }
+
+    private synchronized @Nonnull Response listPorts(@Nonnull Request r) {
+        String deviceId = r.query.get("device_id");
+        return ok(map("ports", ports.values().stream()
+                .filter(p -> deviceId == null || p.deviceId.equals(deviceId))
+                .map(Port::toJson)
+                .collect(Collectors.toList())
+        ));
+    }
+
+    private synchronized @Nonnull Response listFips() {
+        return ok(map("floatingips", fips.values().stream().map(this::fipJson).collect(Collectors.toList())));
+    }
+
+    private synchronized @Nonnull Response getFip(@Nonnull String id) {
+        FloatingIp fip = fips.get(id);
+        if (fip == null) return error(404, "Floating IP " + id + " could not be found");
+        return ok(map("floatingip", fipJson(fip)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nonnull Response createFip(@Nonnull Request r) throws IOException {
+        Map<String, Object> request = (Map<String, Object>) r.body().get("floatingip");
+        synchronized (this) {
+            if (fips.size() + 1 > maxFloatingIps) {
+                return new Response(409, map("NeutronError", map(
+                        "type", "OverQuota", "message", "Quota exceeded for resources: ['floatingip'].", "detail", ""
+                )));
+            }
+            Network network = networks.get(String.valueOf(request.get("floating_network_id")));
+            if (network == null || !network.external) return error(404, "Network " + request.get("floating_network_id") + " could not be found.");
+
+            String portId = (String) request.get("port_id");
+            if (portId != null && !ports.containsKey(portId)) return error(404, "Port " + portId + " could not be found.");
+
+            FloatingIp fip = new FloatingIp(network, network.allocate(), (String) request.get("description"));
+            fip.portId = portId;
+            fips.put(fip.id, fip);
+            return new Response(201, map("floatingip", fipJson(fip)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nonnull Response updateFip(@Nonnull String id, @Nonnull Request r) throws IOException {
+        Map<String, Object> request = (Map<String, Object>) r.body().get("floatingip");
+        synchronized (this) {
+            FloatingIp fip = fips.get(id);
+            if (fip == null) return error(404, "Floating IP " + id + " could not be found");
+
+            String portId = (String) request.get("port_id");
+            if (portId != null && !ports.containsKey(portId)) return error(404, "Port " + portId + " could not be found.");
+            fip.portId = portId;
+            return ok(map("floatingip", fipJson(fip)));
+        }
+    }
+
+    private synchronized @Nonnull Response deleteFip(@Nonnull String id) {
+        if (fips.remove(id) == null) return error(404, "Floating IP " + id + " could not be found");
+        return new Response(204, null);
+    }
+
+    @GuardedBy("this")
+    private @Nonnull Map<String, Object> fipJson(@Nonnull FloatingIp fip) {
+        Port port = fip.portId == null ? null : ports.get(fip.portId);
+        return map(
+                "id", fip.id, "floating_network_id", fip.network.id, "floating_ip_address", fip.address,
+                "fixed_ip_address", port == null ? null : port.address, "port_id", port == null ? null : port.id,
+                "router_id", port == null ? null : routerId, "status", port == null ? "DOWN" : "ACTIVE",
+                "description", fip.description, "tenant_id", PROJECT_ID
+        );
+    }
+
+    @GuardedBy("this")
+    private @Nonnull Port createPort(@Nonnull Network network, @Nonnull String deviceId) {
+        Port port = new Port(network, network.allocate(), deviceId);
+        ports.put(port.id, port);
+        return port;
+    }
+
+    // Glance
+
+    private @Nonnull Response listImages(@Nonnull Request r) {
+        String name = r.query.get("name");
+        String marker = r.query.get("marker");
+        List<Object> images = new ArrayList<>();
+        if ((name == null || IMAGE.equals(name)) && marker == null) {
+            images.add(imageJson());
+        }
+        return ok(map("images", images, "first", "/v2/images", "schema", "/v2/schemas/images"));
+    }
+
+    private @Nonnull Response getImage(@Nonnull String id) {
+        if (!imageId.equals(id)) return error(404, "No image found with ID " + id);
+        return ok(imageJson());
+    }
+
+    private @Nonnull Map<String, Object> imageJson() {
+        String created = iso(0);
+        return map(
+                "id", imageId, "name", IMAGE, "status", "active", "visibility", "public", "container_format", "bare",
+                "disk_format", "qcow2", "size", 1073741824, "min_disk", 0, "min_ram", 0, "created_at", created, "updated_at", created
+        );
+    }
+
+    // Cinder
+
+    private @Nonnull Response listSnapshots() {
+        return ok(map("snapshots", Collections.singletonList(snapshotJson())));
+    }
+
+    private @Nonnull Response getSnapshot(@Nonnull String id) {
+        if (!snapshotId.equals(id)) return error(404, "Snapshot " + id + " could not be found.");
+        return ok(map("snapshot", snapshotJson()));
+    }
+
+    private @Nonnull Map<String, Object> snapshotJson() {
+        return map(
+                "id", snapshotId, "name", VOLUME_SNAPSHOT, "description", "Snapshot to boot from", "status", "available",
+                "volume_id", UUID.nameUUIDFromBytes(snapshotId.getBytes(StandardCharsets.UTF_8)).toString(), "size", 10,
+                "created_at", iso(0)
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nonnull Response updateVolume(@Nonnull String id, @Nonnull Request r) throws IOException {
+        Map<String, Object> volume = new HashMap<>((Map<String, Object>) r.body().get("volume"));
+        volume.put("id", id);
+        volume.put("status", "in-use");
+        volume.put("size", 10);
+        return ok(map("volume", volume));
+    }
+
+    // Helpers
+
+    private static @Nonnull Response ok(@Nonnull Object body) {
+        return new Response(200, body);
+    }
+
+    private static @Nonnull Response error(int status, @Nonnull String message) {
+        return new Response(status, map("error", map("code", status, "message", message)));
+    }
+
+    private static @Nonnull String iso(long millis) {
+        return Instant.ofEpochMilli(millis).toString();
+    }
+
+    /**
+     * Map of alternating keys and values, in order.
+     */
+    private static @Nonnull Map<String, Object> map(@Nonnull Object... entries) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Distribution of delays in milliseconds.
+     */
+    @FunctionalInterface
+    public interface Latency {
+        long next(@Nonnull Random random);
+
+        static @Nonnull Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static @Nonnull Latency uniform(long min, long max) {
+            return random -> min + (long) (random.nextDouble() * (max - min));
+        }
+
+        /**
+         * Long tailed distribution typical for response times.
+         *
+         * @param median Median delay.
+         * @param sigma Standard deviation of the logarithm, 0.5 makes p99 about 3 times the median.
+         */
+        static @Nonnull Latency logNormal(long median, double sigma) {
+            return random -> Math.round(median * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private static final class Failure {
+        private final int status;
+        private final double probability;
+
+        private Failure(int status, double probability) {
+            this.status = status;
+            this.probability = probability;
+        }
+    }
+
+    private static final class Call {
+        private final @Nonnull String op;
+        private final @Nonnull Callable<Response> action;
+
+        private Call(@Nonnull String op, @Nonnull Callable<Response> action) {
+            this.op = op;
+            this.action = action;
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final @CheckForNull Object body;
+        private final @Nonnull Map<String, String> headers;
+
+        private Response(int status, @CheckForNull Object body) {
+            this(status, body, Collections.emptyMap());
+        }
+
+        private Response(int status, @CheckForNull Object body, @Nonnull Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+
+    private static final class Request {
+        private final @Nonnull HttpExchange exchange;
+        private final @Nonnull String method;
+        private final @Nonnull String service;
+        // Resource path with the version and project prefixes removed
+        private final @Nonnull List<String> path;
+        private final @Nonnull Map<String, String> query = new HashMap<>();
+
+        private Request(@Nonnull HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod();
+
+            List<String> segments = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                    .filter(s -> !s.isEmpty())
+                    .collect(Collectors.toList())
+            ;
+            service = segments.isEmpty() ? "" : segments.get(0);
+            int start = 1;
+            while (start < segments.size() && (VERSION.matcher(segments.get(start)).matches() || PROJECT_ID.equals(segments.get(start)))) {
+                start++;
+            }
+            path = segments.subList(Math.min(start, segments.size()), segments.size());
+
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (rawQuery != null) {
+                for (String param : rawQuery.split("&")) {
+                    String[] kv = param.split("=", 2);
+                    query.put(decode(kv[0]), kv.length == 2 ? decode(kv[1]) : "");
+                }
+            }
+        }
+
+        private static @Nonnull String decode(@Nonnull String value) {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Match method and path, null matching any segment.
+         */
+        private boolean is(@Nonnull String method, @Nonnull String... segments) {
+            if (!this.method.equals(method) || path.size() != segments.length) return false;
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i] != null && !segments[i].equals(path.get(i))) return false;
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private @Nonnull Map<String, Object> body() throws IOException {
+            return MAPPER.readValue(exchange.getRequestBody(), Map.class);
+        }
+    }
+
+    private static final class Flavor {
+        private final @Nonnull String id;
+        private final @Nonnull String name;
+        private final int vcpus;
+        private final int ram;
+        private final int disk;
+
+        private Flavor(@Nonnull String id, @Nonnull String name, int vcpus, int ram, int disk) {
+            this.id = id;
+            this.name = name;
+            this.vcpus = vcpus;
+            this.ram = ram;
+            this.disk = disk;
+        }
+
+        private @Nonnull Map<String, Object> toJson() {
+            return map("id", id, "name", name, "vcpus", vcpus, "ram", ram, "disk", disk, "links", Collections.emptyList());
+        }
+    }
+
+    private static final class Network {
+        private final @Nonnull String id;
+        private final @Nonnull String subnetId;
+        private final @Nonnull String name;
+        private final @Nonnull String prefix;
+        private final boolean external;
+        private final AtomicLong allocated = new AtomicLong();
+
+        private Network(@Nonnull String name, @Nonnull String prefix, boolean external) {
+            this.id = idOf(name);
+            this.subnetId = UUID.nameUUIDFromBytes((name + "-subnet").getBytes(StandardCharsets.UTF_8)).toString();
+            this.name = name;
+            this.prefix = prefix;
+            this.external = external;
+        }
+
+        // Stable so tests can refer to it
+        private static @Nonnull String idOf(@Nonnull String name) {
+            return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+        }
+
+        private @Nonnull String allocate() {
+            long n = allocated.incrementAndGet();
+            return prefix + "." + (n / 254 % 256) + "." + (n % 254 + 1);
+        }
+
+        private @Nonnull Map<String, Object> toJson() {
+            return map(
+                    "id", id, "name", name, "status", "ACTIVE", "admin_state_up", true, "shared", false,
+                    "router:external", external, "tenant_id", PROJECT_ID, "subnets", Collections.singletonList(subnetId)
+            );
+        }
+    }
+
+    private static final class Port {
+        private final @Nonnull String id = UUID.randomUUID().toString();
+        private final @Nonnull Network network;
+        private final @Nonnull String address;
+        private final @Nonnull String deviceId;
+        private final @Nonnull String mac;
+
+        private Port(@Nonnull Network network, @Nonnull String address, @Nonnull String deviceId) {
+            this.network = network;
+            this.address = address;
+            this.deviceId = deviceId;
+            String hex = id.replace("-", "");
+            this.mac = "fa:16:3e:" + hex.substring(0, 2) + ":" + hex.substring(2, 4) + ":" + hex.substring(4, 6);
+        }
+
+        private @Nonnull Map<String, Object> toJson() {
+            return map(
+                    "id", id, "network_id", network.id, "device_id", deviceId, "device_owner", "compute:nova",
+                    "mac_address", mac, "status", "ACTIVE", "admin_state_up", true, "tenant_id", PROJECT_ID,
+                    "fixed_ips", Collections.singletonList(map("subnet_id", network.subnetId, "ip_address", address))
+            );
+        }
+    }
+
+    private static final class FloatingIp {
+        private final @Nonnull String id = UUID.randomUUID().toString();
+        private final @Nonnull Network network;
+        private final @Nonnull String address;
+        private final @CheckForNull String description;
+        private @CheckForNull String portId;
+
+        private FloatingIp(@Nonnull Network network, @Nonnull String address, @CheckForNull String description) {
+            this.network = network;
+            this.address = address;
+            this.description = description;
+        }
+    }
+
+    private final class FakeServer {
+        private final @Nonnull String id = UUID.randomUUID().toString();
+        private final @Nonnull String name;
+        private final @Nonnull Flavor flavor;
+        private final @Nonnull String imageId;
+        private final @Nonnull Map<String, String> metadata;
+        private final @Nonnull String zone;
+        private final @CheckForNull String keyName;
+        private final long created;
+        private final long activeAt;
+        private final boolean failed;
+        private final List<Port> ports = new ArrayList<>();
+        private final List<String> tags = new ArrayList<>();
+        private long deletedAt;
+
+        private FakeServer(
+                @Nonnull String name, @Nonnull Flavor flavor, @Nonnull String imageId, @Nonnull Map<String, String> metadata,
+                @Nonnull String zone, @CheckForNull String keyName, long created, long activeAt, boolean failed
+        ) {
+            this.name = name;
+            this.flavor = flavor;
+            this.imageId = imageId;
+            this.metadata = metadata;
+            this.zone = zone;
+            this.keyName = keyName;
+            this.created = created;
+            this.activeAt = activeAt;
+            this.failed = failed;
+        }
+
+        private @Nonnull String status(long now) {
+            if (deletedAt != 0) return "DELETED";
+            if (now < activeAt) return "BUILD";
+            return failed ? "ERROR" : "ACTIVE";
+        }
+
+        private long updated(long now) {
+            if (deletedAt != 0) return deletedAt;
+            return now < activeAt ? created : activeAt;
+        }
+
+        @GuardedBy("FakeOpenstack.this")
+        private @Nonnull Map<String, Object> toJson(long now) {
+            Map<String, List<Object>> addresses = new LinkedHashMap<>();
+            if (deletedAt == 0) {
+                for (Port port : ports) {
+                    List<Object> addrs = addresses.computeIfAbsent(port.network.name, n -> new ArrayList<>());
+                    addrs.add(map("addr", port.address, "version", 4, "OS-EXT-IPS:type", "fixed", "OS-EXT-IPS-MAC:mac_addr", port.mac));
+                    for (FloatingIp fip : fips.values()) {
+                        if (port.id.equals(fip.portId)) {
+                            addrs.add(map("addr", fip.address, "version", 4, "OS-EXT-IPS:type", "floating", "OS-EXT-IPS-MAC:mac_addr", port.mac));
+                        }
+                    }
+                }
+            }
+
+            String status = status(now);
+            Map<String, Object> json = map(
+                    "id", id, "name", name, "status", status, "tenant_id", PROJECT_ID, "user_id", "fake-user",
+                    "created", iso(created), "updated", iso(updated(now)), "metadata", metadata, "addresses", addresses,
+                    "flavor", map("id", flavor.id), "image", imageId.isEmpty() ? "" : map("id", imageId),
+                    "key_name", keyName, "OS-EXT-AZ:availability_zone", zone, "tags", tags,
+                    "OS-EXT-STS:vm_state", status.toLowerCase(), "OS-EXT-STS:power_state", "ACTIVE".equals(status) ? 1 : 0
+            );
+            if ("ERROR".equals(status)) {
+                json.put("fault", map("code", 500, "message", "No valid host was found.", "created", iso(activeAt)));
+            }
+            return json;
+        }
+    }
+}
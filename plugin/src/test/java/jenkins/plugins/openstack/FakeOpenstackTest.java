@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack;
+
+import jenkins.plugins.openstack.compute.internal.Openstack;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openstack4j.api.Builders;
+import org.openstack4j.api.exceptions.ServerResponseException;
+import org.openstack4j.model.compute.Flavor;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.compute.builder.ServerCreateBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FakeOpenstackTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public FakeOpenstack fake = new FakeOpenstack();
+
+    @Test
+    public void provisionAndDestroy() throws Exception {
+        fake.addServers(100, Collections.emptyMap());
+        Openstack os = openstack();
+
+        List<String> flavors = os.getSortedFlavors().stream().map(Flavor::getName).collect(Collectors.toList());
+        assertThat(flavors, hasItem(FakeOpenstack.FLAVOR));
+        assertEquals(Collections.singletonList(FakeOpenstack.FIP_POOL), os.getSortedIpPools());
+
+        Server server = os.bootAndWaitActive(request("fake-agent"), 10_000);
+        assertEquals(Server.Status.ACTIVE, server.getStatus());
+        server = os.assignFloatingIp(server, FakeOpenstack.FIP_POOL);
+        assertEquals("floating", Openstack.getAccessIpAddressObject(server).getType());
+        assertEquals(1, os.getRunningNodes().size());
+        assertEquals(1, fake.getCalls("nova.servers.boot"));
+
+        os.destroyServer(server);
+        assertEquals(100, fake.getServerCount());
+        assertEquals(0, fake.getFloatingIpCount());
+    }
+
+    @Test
+    public void quotaAndFailures() throws Exception {
+        Openstack os = openstack();
+
+        fake.maxInstances(0);
+        try {
+            os.bootAndWaitActive(request("over-quota"), 10_000);
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            // Expected
+        }
+        assertEquals(0, fake.getServerCount());
+
+        fake.fail(FakeOpenstack.ANY, 503, 1);
+        try {
+            os.getSortedFlavors();
+            fail();
+        } catch (ServerResponseException ex) {
+            assertEquals(503, ex.getStatus());
+        }
+    }
+
+    private Openstack openstack() throws Exception {
+        return Openstack.FactoryEP.get(fake.getEndpoint(), false, fake.getCredential(), FakeOpenstack.REGION);
+    }
+
+    private ServerCreateBuilder request(String name) {
+        return Builders.server().name(name).flavor("2").image(fake.getImageId())
+                .networks(Collections.singletonList(FakeOpenstack.networkId(FakeOpenstack.NETWORK)))
+        ;
+    }
+}
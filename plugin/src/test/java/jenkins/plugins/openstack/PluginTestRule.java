@@ -120,7 +120,7 @@ public final class PluginTestRule extends JenkinsRule {
         }
         return new SlaveOptions(
                 new BootSource.VolumeSnapshot("id"), "hw", "nw1,mw2", "dummyUserDataId", 1, 2, "pool", "sg", "az", 1, null, 10,
-                "jvmo", "fsRoot", LauncherFactory.JNLP.JNLP, mkListOfNodeProperties(1, 2), 1, null
+                "jvmo", "fsRoot", LauncherFactory.JNLP.JNLP, mkListOfNodeProperties(1, 2), 1, null, null
         );
     }
 
@@ -312,6 +312,12 @@ public final class PluginTestRule extends JenkinsRule {
         return cloud;
     }
 
+    public JCloudsCloud dummyCloud(String name, JCloudsSlaveTemplate... templates) {
+        JCloudsCloud cloud = new MockJCloudsCloud(name, MockJCloudsCloud.DEFAULTS, templates);
+        jenkins.clouds.add(cloud);
+        return cloud;
+    }
+
     public JCloudsCloud configureSlaveLaunchingWithFloatingIP(String labels) {
         return configureSlaveLaunchingWithFloatingIP(dummyCloud(dummySlaveTemplate(labels)));
     }
@@ -397,11 +403,13 @@ public final class PluginTestRule extends JenkinsRule {
             return machine;
         });
         when(os.assignFloatingIp(any(Server.class), any(String.class))).thenAnswer((Answer<Server>) invocation1 -> (Server) invocation1.getArguments()[0]);
-        when(os.getRunningNodes()).thenAnswer((Answer<List<Server>>) invocation1 -> {
+        Answer<List<Server>> runningNodes = invocation1 -> {
             synchronized (running) {
                 return new ArrayList<>(running);
             }
-        });
+        };
+        when(os.getRunningNodes()).thenAnswer(runningNodes);
+        when(os.getRunningNodes(anyLong())).thenAnswer(runningNodes);
         when(os.getServerById(any(String.class))).thenAnswer((Answer<Server>) invocation1 -> {
             String expected = (String) invocation1.getArguments()[0];
             synchronized (running) {
@@ -641,7 +649,11 @@ public final class PluginTestRule extends JenkinsRule {
         }
 
         public MockJCloudsCloud(SlaveOptions opts, JCloudsSlaveTemplate... templates) {
-            super("openstack", "endPointUrl", false,"zone", opts, Arrays.asList(templates), "credentialsId");
+            this("openstack", opts, templates);
+        }
+
+        public MockJCloudsCloud(String name, SlaveOptions opts, JCloudsSlaveTemplate... templates) {
+            super(name, "endPointUrl", false,"zone", opts, Arrays.asList(templates), "credentialsId");
         }
 
         @Override
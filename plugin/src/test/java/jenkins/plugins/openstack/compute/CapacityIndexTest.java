@@ -0,0 +1,86 @@
+/*
+ *
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.User;
+import hudson.slaves.OfflineCause;
+import jenkins.plugins.openstack.PluginTestRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CapacityIndexTest {
+
+    @Rule
+    public PluginTestRule j = new PluginTestRule();
+
+    @Test
+    public void countSameAsTemplateLookups() throws Exception {
+        JCloudsSlaveTemplate a = j.dummySlaveTemplate("a");
+        JCloudsSlaveTemplate b = j.dummySlaveTemplate("b");
+        JCloudsSlaveTemplate unused = j.dummySlaveTemplate("c");
+        JCloudsCloud cloud = j.configureSlaveLaunchingWithFloatingIP(j.dummyCloud(a, b, unused));
+
+        j.provision(cloud, "a"); // Available
+        j.provision(cloud, "a").getComputer().setPendingDelete(true);
+        j.provision(cloud, "a").getComputer().setTemporarilyOffline(true, new OfflineCause.UserCause(User.current(), "For testing"));
+        j.provision(cloud, "b"); // Available
+        JCloudsSlave busy = j.provision(cloud, "b");
+
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.setAssignedNode(busy);
+        JCloudsCleanupThreadTest.BuildBlocker blocker = new JCloudsCleanupThreadTest.BuildBlocker();
+        p.getBuildersList().add(blocker);
+        FreeStyleBuild build = p.scheduleBuild2(0).waitForStart();
+        blocker.awaitStarted();
+
+        try {
+            CapacityIndex index = CapacityIndex.of(cloud);
+            assertEquals(JCloudsComputer.getAll().size(), index.getNodes());
+            assertEquals(cloud.getOpenstack().getRunningNodes().size(), index.getServers());
+            for (JCloudsSlaveTemplate t : cloud.getTemplates()) {
+                String name = t.getName();
+                long nodes = JCloudsComputer.getAll().stream().filter(c -> name.equals(c.getId().getTemplateName())).count();
+                assertEquals(name, nodes, index.getNodes(name));
+                assertEquals(name, t.getRunningNodes().size(), index.getServers(name));
+                assertEquals(name, t.getAvailableNodesTotal(), index.getAvailableNodes(name));
+            }
+
+            // Idle, pending delete and user offline filters all applied
+            assertEquals(3, index.getNodes(a.getName()));
+            assertEquals(1, index.getAvailableNodes(a.getName()));
+            assertEquals(2, index.getNodes(b.getName()));
+            assertEquals(1, index.getAvailableNodes(b.getName()));
+            assertEquals(0, index.getNodes(unused.getName()));
+        } finally {
+            blocker.signalDone();
+            j.waitForCompletion(build);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.plugins.openstack.compute;
+
+import hudson.XmlFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DemandForecastTest {
+
+    private static final long MONDAY_9AM = LocalDateTime.of(2024, 1, 1, 9, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void predictPeakAhead() {
+        DemandForecast forecast = new DemandForecast(null);
+        forecast.record(Collections.singletonMap("cloud/tmplt", 8), MONDAY_9AM);
+
+        assertEquals(8, forecast.getForecast("cloud/tmplt", MONDAY_9AM)); // During peak
+        assertEquals(8, forecast.getForecast("cloud/tmplt", MONDAY_9AM - HOUR)); // Prepare for peak
+        assertEquals(0, forecast.getForecast("cloud/tmplt", MONDAY_9AM + HOUR)); // After peak
+        assertEquals(0, forecast.getForecast("cloud/other", MONDAY_9AM));
+
+        // Quiet next week lowers the prediction gradually, however many samples it took
+        for (int i = 0; i < 30; i++) {
+            forecast.record(Collections.singletonMap("cloud/tmplt", 0), MONDAY_9AM + WEEK + i * MINUTE * 2);
+        }
+        assertEquals(6, forecast.getForecast("cloud/tmplt", MONDAY_9AM + 2 * WEEK)); // 5.6
+        forecast.record(Collections.singletonMap("cloud/tmplt", 0), MONDAY_9AM + WEEK + HOUR);
+        assertEquals(6, forecast.getForecast("cloud/tmplt", MONDAY_9AM + 2 * WEEK));
+
+        // Peak of the hour counts, not the samples around it
+        forecast.record(Collections.singletonMap("cloud/tmplt", 1), MONDAY_9AM + 2 * WEEK);
+        forecast.record(Collections.singletonMap("cloud/tmplt", 10), MONDAY_9AM + 2 * WEEK + MINUTE);
+        forecast.record(Collections.singletonMap("cloud/tmplt", 1), MONDAY_9AM + 2 * WEEK + 2 * MINUTE);
+        assertEquals(7, forecast.getForecast("cloud/tmplt", MONDAY_9AM + 3 * WEEK)); // 6.92
+
+        // Removed templates are forgotten
+        forecast.record(Collections.emptyMap(), MONDAY_9AM);
+        assertEquals(0, forecast.getForecast("cloud/tmplt", MONDAY_9AM));
+    }
+
+    @Test
+    public void persist() throws Exception {
+        XmlFile file = new XmlFile(new File(tmp.getRoot(), "forecast.xml"));
+        new DemandForecast(file).record(Collections.singletonMap("cloud/tmplt", 3), MONDAY_9AM);
+
+        assertEquals(3, new DemandForecast(file).getForecast("cloud/tmplt", MONDAY_9AM));
+    }
+}
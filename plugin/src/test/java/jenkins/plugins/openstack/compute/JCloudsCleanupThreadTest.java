@@ -11,23 +11,32 @@ import hudson.node_monitors.DiskSpaceMonitorDescriptor;
 import hudson.slaves.OfflineCause;
 import hudson.util.OneShotEvent;
 import jenkins.model.InterruptedBuildAction;
+import jenkins.model.Jenkins;
 import jenkins.plugins.openstack.PluginTestRule;
 import jenkins.plugins.openstack.compute.internal.Openstack;
 import jenkins.plugins.openstack.compute.slaveopts.LauncherFactory;
 import org.hamcrest.Matchers;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
 import org.jenkinsci.plugins.resourcedisposer.AsyncResourceDisposer;
+import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
 import org.jvnet.hudson.test.TestBuilder;
 import org.openstack4j.model.compute.Server;
 
 import java.io.IOException;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static hudson.model.Label.get;
 import static java.util.Collections.emptyList;
@@ -41,6 +50,9 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +64,11 @@ public class JCloudsCleanupThreadTest {
     @Rule
     public PluginTestRule j = new PluginTestRule();
 
+    @After
+    public void tearDown() {
+        JCloudsCleanupThread.cloudTimeout = TimeUnit.MINUTES.toMillis(5);
+    }
+
     @Test
     public void discardTemporarilyOfflineSlave() throws Exception {
         JCloudsCloud cloud = j.configureSlaveLaunchingWithFloatingIP(j.dummyCloud(j.dummySlaveTemplate("label")));
@@ -238,6 +255,118 @@ public class JCloudsCleanupThreadTest {
         assertThat(j.jenkins.getNodes(), Matchers.iterableWithSize(1));
     }
 
+    @Test
+    public void sweepOtherCloudsWhenOneFails() {
+        Openstack failing = j.dummyCloud("failing").getOpenstack();
+        Openstack healthy = j.dummyCloud("healthy").getOpenstack();
+        when(failing.getRunningNodes()).thenThrow(new RuntimeException("Broken cloud"));
+        when(healthy.getFreeFipIds()).thenReturn(Collections.singletonList("leaked"));
+
+        j.triggerOpenstackSlaveCleanup();
+
+        verify(failing, never()).getFreeFipIds();
+        verify(healthy).destroyFip("leaked");
+    }
+
+    @Test
+    public void abandonSweepExceedingTimeout() throws Exception {
+        JCloudsCleanupThread.cloudTimeout = 500;
+        Openstack slow = j.dummyCloud("slow").getOpenstack();
+        Openstack healthy = j.dummyCloud("healthy").getOpenstack();
+        OneShotEvent release = new OneShotEvent();
+        when(slow.getRunningNodes()).thenAnswer(invocation -> {
+            release.block();
+            return emptyList();
+        });
+        when(healthy.getFreeFipIds()).thenReturn(Collections.singletonList("leaked"));
+
+        try {
+            long start = System.currentTimeMillis();
+            j.triggerOpenstackSlaveCleanup();
+            assertThat(System.currentTimeMillis() - start, Matchers.lessThan(5000L));
+
+            verify(healthy).destroyFip("leaked");
+            verify(slow, never()).getFreeFipIds();
+        } finally {
+            release.signal();
+        }
+    }
+
+    @Test
+    public void skipCloudStillSweeping() throws Exception {
+        JCloudsCleanupThread.cloudTimeout = 100;
+        Openstack slow = j.dummyCloud("slow").getOpenstack();
+        Openstack healthy = j.dummyCloud("healthy").getOpenstack();
+        OneShotEvent entered = new OneShotEvent();
+        OneShotEvent release = new OneShotEvent();
+        when(slow.getRunningNodes()).thenAnswer(invocation -> {
+            entered.signal();
+            release.block();
+            return emptyList();
+        });
+
+        try {
+            j.triggerOpenstackSlaveCleanup();
+            entered.block();
+            j.triggerOpenstackSlaveCleanup();
+
+            verify(slow, times(1)).getRunningNodes();
+            verify(healthy, times(2)).getRunningNodes();
+        } finally {
+            release.signal();
+        }
+    }
+
+    @Test
+    public void sweepAgainWhenRequestedDuringSweep() throws Exception {
+        Openstack os = j.dummyCloud().getOpenstack();
+        OneShotEvent entered = new OneShotEvent();
+        OneShotEvent release = new OneShotEvent();
+        AtomicInteger sweeps = new AtomicInteger();
+        when(os.getFreeFipIds()).thenAnswer(invocation -> {
+            if (sweeps.incrementAndGet() == 1) {
+                entered.signal();
+                release.block();
+            }
+            return emptyList();
+        });
+
+        try {
+            JCloudsCleanupThread.sweepNow();
+            entered.block();
+
+            JCloudsCleanupThread.sweepNow(); // Not started concurrently, but queued
+            verify(os, times(1)).getFreeFipIds();
+        } finally {
+            release.signal();
+        }
+
+        verify(os, timeout(5000).times(2)).getFreeFipIds();
+    }
+
+    @Test
+    public void sweepRequiresAdministerAndPost() throws Exception {
+        Openstack os = j.dummyCloud().getOpenstack();
+
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        MockAuthorizationStrategy mas = new MockAuthorizationStrategy();
+        mas.grant(Jenkins.READ).everywhere().to("user");
+        mas.grant(Jenkins.ADMINISTER).everywhere().to("admin");
+        j.jenkins.setAuthorizationStrategy(mas);
+
+        URL url = new URL(j.getURL(), "descriptorByName/jenkins.plugins.openstack.compute.JCloudsCloud/sweep");
+
+        JenkinsRule.WebClient user = j.createWebClientAllowingFailures().login("user");
+        assertEquals(403, user.getPage(user.addCrumb(new WebRequest(url, HttpMethod.POST))).getWebResponse().getStatusCode());
+
+        JenkinsRule.WebClient admin = j.createWebClientAllowingFailures().login("admin");
+        assertEquals(405, admin.getPage(url).getWebResponse().getStatusCode());
+        verify(os, never()).getFreeFipIds();
+
+        assertEquals(200, admin.getPage(admin.addCrumb(new WebRequest(url, HttpMethod.POST))).getWebResponse().getStatusCode());
+        verify(os, timeout(5000)).getFreeFipIds();
+    }
+
     public static class BuildBlocker extends TestBuilder {
         private final OneShotEvent enter = new OneShotEvent();
         private final OneShotEvent exit = new OneShotEvent();
@@ -47,6 +47,7 @@ import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.mockito.stubbing.Answer;
 import org.openstack4j.api.OSClient;
+import org.openstack4j.api.exceptions.AuthenticationException;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
@@ -133,10 +134,10 @@ public class JCloudsCloudTest {
         String openstackAuth = j.dummyCredentials();
 
         JCloudsSlaveTemplate template = new JCloudsSlaveTemplate("template", "label", new SlaveOptions(
-                new BootSource.Image("iid"), "hw", "nw", "ud", 1, 0, "public", "sg", "az", 2, "kp", 3, "jvmo", "fsRoot", LauncherFactory.JNLP.JNLP, null, 4, false
+                new BootSource.Image("iid"), "hw", "nw", "ud", 1, 0, "public", "sg", "az", 2, "kp", 3, "jvmo", "fsRoot", LauncherFactory.JNLP.JNLP, null, 4, false, null
         ));
         JCloudsCloud cloud = new JCloudsCloud("openstack", "endPointUrl", false,"zone", new SlaveOptions(
-                new BootSource.VolumeSnapshot("vsid"), "HW", "NW", "UD", 6, 4, null, "SG", "AZ", 7, "KP", 8, "JVMO", "FSrOOT", new LauncherFactory.SSH("cid"), null, 9, false
+                new BootSource.VolumeSnapshot("vsid"), "HW", "NW", "UD", 6, 4, null, "SG", "AZ", 7, "KP", 8, "JVMO", "FSrOOT", new LauncherFactory.SSH("cid"), null, 9, false, null
         ), Collections.singletonList(template),openstackAuth);
         j.jenkins.clouds.add(cloud);
 
@@ -422,6 +423,7 @@ public class JCloudsCloudTest {
         final int indexOfCredentials = openstackCredentials.indexOf(openstackCredentialWithOldPassword);
         final SlaveOptions defOpts = JCloudsCloud.DescriptorImpl.getDefaultOptions();
         final JCloudsCloud cloud = new JCloudsCloud("cloudName", ep, false, zone, defOpts, null, openstackCredentialWithOldPassword.getId());
+        j.jenkins.clouds.add(cloud);
         when(factory.getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class))).thenAnswer((Answer<Openstack>) invocation -> {
             // create new instance every time we are called
             return new Openstack(client);
@@ -431,6 +433,7 @@ public class JCloudsCloudTest {
         // When
         final Openstack beforePwdChange = cloud.getOpenstack();
         openstackCredentials.set(indexOfCredentials, openstackCredentialWithNewPassword);
+        SystemCredentialsProvider.getInstance().save();
         final Openstack afterPwdChange = cloud.getOpenstack();
 
         // Then
@@ -441,6 +444,61 @@ public class JCloudsCloudTest {
         verify(factory, times(2)).getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class));
     }
 
+    @Test
+    public void recheckCredentialsChangedInMemory() throws Exception {
+        final Openstack.FactoryEP factory = j.mockOpenstackFactory();
+        final OSClient.OSClientV2 client = mock(OSClient.OSClientV2.class, RETURNS_DEEP_STUBS);
+        final OpenstackCredential original = new OpenstackCredentialv2(CredentialsScope.SYSTEM, "myCredId", "desc", "tenant", "user", "originalPassword");
+        final OpenstackCredential updated = new OpenstackCredentialv2(CredentialsScope.SYSTEM, "myCredId", "desc", "tenant", "user", "updatedPassword");
+        final List<Credentials> credentials = SystemCredentialsProvider.getInstance().getCredentials();
+        credentials.add(original);
+        final JCloudsCloud cloud = new JCloudsCloud("cloudName", "http://foo", false, "region", JCloudsCloud.DescriptorImpl.getDefaultOptions(), null, original.getId());
+        when(factory.getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class))).thenAnswer((Answer<Openstack>) invocation -> {
+            return new Openstack(client);
+        });
+
+        long recheck = JCloudsCloud.credentialsRecheck;
+        JCloudsCloud.credentialsRecheck = 500;
+        try {
+            final Openstack before = cloud.getOpenstack();
+            credentials.set(credentials.indexOf(original), updated);
+
+            // Not looked up again until rechecked
+            assertThat(cloud.getOpenstack(), sameInstance(before));
+
+            Thread.sleep(600);
+            assertThat(cloud.getOpenstack(), not(anyOf(sameInstance(before), sameInstance(null))));
+            verify(factory, times(2)).getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class));
+        } finally {
+            JCloudsCloud.credentialsRecheck = recheck;
+        }
+    }
+
+    @Test
+    public void cachedOpenstackInstanceInvalidatedIfAuthenticationFails() throws Exception {
+        final Openstack.FactoryEP factory = j.mockOpenstackFactory();
+        final OSClient.OSClientV2 client = mock(OSClient.OSClientV2.class, RETURNS_DEEP_STUBS);
+        when(client.compute().servers().get("42")).thenThrow(new AuthenticationException("Authentication failed", 401));
+        final OpenstackCredential credential = new OpenstackCredentialv2(CredentialsScope.SYSTEM, "myCredId", "desc", "tenant", "user", "password");
+        SystemCredentialsProvider.getInstance().getCredentials().add(credential);
+        final JCloudsCloud cloud = new JCloudsCloud("cloudName", "http://foo", false, "region", JCloudsCloud.DescriptorImpl.getDefaultOptions(), null, credential.getId());
+        when(factory.getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class))).thenAnswer((Answer<Openstack>) invocation -> {
+            return new Openstack(client);
+        });
+
+        final Openstack original = cloud.getOpenstack();
+        assertThat(cloud.getOpenstack(), sameInstance(original));
+        try {
+            original.getServerById("42");
+            fail();
+        } catch (AuthenticationException expected) {
+            // Expected
+        }
+
+        assertThat(cloud.getOpenstack(), not(anyOf(sameInstance(original), sameInstance(null))));
+        verify(factory, times(2)).getOpenstack(any(String.class), any(boolean.class), any(OpenstackCredential.class), any(String.class));
+    }
+
     private JCloudsCloud getCloudWhereUserIsAuthorizedTo(final Permission authorized, final JCloudsSlaveTemplate template) {
         return j.configureSlaveLaunchingWithFloatingIP(new AclControllingJCloudsCloud(template, authorized));
     }
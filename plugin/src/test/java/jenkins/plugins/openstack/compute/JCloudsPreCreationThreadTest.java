@@ -0,0 +1,158 @@
+/*
+ *
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import hudson.util.OneShotEvent;
+import jenkins.plugins.openstack.PluginTestRule;
+import jenkins.plugins.openstack.compute.internal.Openstack;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class JCloudsPreCreationThreadTest {
+
+    @Rule
+    public PluginTestRule j = new PluginTestRule();
+
+    @After
+    public void tearDown() {
+        JCloudsPreCreationThread.deadline = TimeUnit.SECONDS.toMillis(90);
+    }
+
+    @Test
+    public void topUpTemplatesWhileOthersFailOrHang() {
+        JCloudsPreCreationThread.deadline = 5000;
+        ScriptedCloud cloud = addCloud(template("healthy", 2), template("failing", 1), template("slow", 1));
+
+        try {
+            j.triggerSlavePreCreation();
+
+            assertEquals(2, cloud.attempts("healthy"));
+            assertEquals(1, cloud.attempts("failing"));
+            assertEquals(1, cloud.attempts("slow"));
+            assertEquals(2, JCloudsComputer.getAll().stream().filter(c -> "healthy".equals(c.getId().getTemplateName())).count());
+        } finally {
+            cloud.release.signal();
+        }
+    }
+
+    @Test
+    public void doNotPreCreateInstancesInFlight() {
+        JCloudsPreCreationThread.deadline = 100;
+        ScriptedCloud cloud = addCloud(template("slow", 2));
+
+        try {
+            j.triggerSlavePreCreation();
+            assertEquals(2, cloud.attempts("slow"));
+
+            j.triggerSlavePreCreation();
+            assertEquals(2, cloud.attempts("slow"));
+        } finally {
+            cloud.release.signal();
+        }
+    }
+
+    @Test
+    public void probeFailingTemplateWithSingleInstance() {
+        ScriptedCloud cloud = addCloud(template("failing", 3));
+
+        j.triggerSlavePreCreation();
+        assertEquals(3, cloud.attempts("failing"));
+
+        j.triggerSlavePreCreation();
+        assertEquals(4, cloud.attempts("failing"));
+    }
+
+    @Test
+    public void forgetRemovedTemplates() {
+        ScriptedCloud cloud = addCloud(template("failing", 3));
+
+        j.triggerSlavePreCreation();
+        assertEquals(3, cloud.attempts("failing"));
+
+        // Failures not remembered once the template is gone
+        j.jenkins.clouds.remove(cloud);
+        j.triggerSlavePreCreation();
+        j.jenkins.clouds.add(cloud);
+
+        j.triggerSlavePreCreation();
+        assertEquals(6, cloud.attempts("failing"));
+    }
+
+    private JCloudsSlaveTemplate template(String name, int instancesMin) {
+        return new JCloudsSlaveTemplate(name, "label", j.defaultSlaveOptions().getBuilder().instancesMin(instancesMin).build());
+    }
+
+    private ScriptedCloud addCloud(JCloudsSlaveTemplate... templates) {
+        ScriptedCloud cloud = new ScriptedCloud(templates);
+        j.jenkins.clouds.add(cloud);
+        j.configureSlaveLaunchingWithFloatingIP(cloud);
+        return cloud;
+    }
+
+    /**
+     * Fails template "failing", hangs template "slow" until released and provisions the rest.
+     */
+    private static final class ScriptedCloud extends PluginTestRule.MockJCloudsCloud {
+        private final transient Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final transient OneShotEvent release = new OneShotEvent();
+
+        private ScriptedCloud(JCloudsSlaveTemplate... templates) {
+            super(templates);
+        }
+
+        private int attempts(String template) {
+            AtomicInteger count = attempts.get(template);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        @Nonnull JCloudsSlave provisionSlaveExplicitly(@Nonnull JCloudsSlaveTemplate template) throws IOException, Openstack.ActionFailed {
+            attempts.computeIfAbsent(template.getName(), k -> new AtomicInteger()).incrementAndGet();
+            switch (template.getName()) {
+                case "failing":
+                    throw new Openstack.ActionFailed("Failing for testing");
+                case "slow":
+                    try {
+                        release.block();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                    throw new Openstack.ActionFailed("Released by the test");
+                default:
+                    return super.provisionSlaveExplicitly(template);
+            }
+        }
+    }
+}
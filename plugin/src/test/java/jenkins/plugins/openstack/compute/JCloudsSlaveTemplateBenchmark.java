@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import jenkins.plugins.openstack.compute.internal.Openstack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstack4j.model.network.Network;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class JCloudsSlaveTemplateBenchmark {
+
+    private Openstack os;
+
+    @Setup
+    public void setUp() {
+        Map<String, Network> networks = new HashMap<>();
+        Map<Network, Integer> capacities = new HashMap<>();
+        for (String name : new String[] { "public", "private-a", "private-b", "private-c", "storage" }) {
+            Network network = mock(Network.class, withSettings().stubOnly());
+            when(network.getId()).thenReturn(name + "-id");
+            when(network.getName()).thenReturn(name);
+            networks.put(network.getId(), network);
+            capacities.put(network, 100);
+        }
+
+        // Stub only, so the invocations are not recorded
+        os = mock(Openstack.class, withSettings().stubOnly());
+        when(os.getNetworks(anyListOf(String.class))).thenReturn(networks);
+        when(os.getNetworksCapacity(anyMap())).thenReturn(capacities);
+    }
+
+    @Benchmark
+    public List<String> selectNetworkIds() {
+        return JCloudsSlaveTemplate.selectNetworkIds(os, "public,private-a-id");
+    }
+
+    @Benchmark
+    public List<String> selectNetworkIdsAlternatives() {
+        return JCloudsSlaveTemplate.selectNetworkIds(os, "public,private-a|private-b|private-c,storage");
+    }
+}
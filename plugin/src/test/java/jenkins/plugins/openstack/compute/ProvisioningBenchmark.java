@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute;
+
+import hudson.model.Computer;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import jenkins.plugins.openstack.FakeOpenstack;
+import jenkins.plugins.openstack.PluginTestRule;
+import jenkins.plugins.openstack.compute.auth.OpenstackCredentials;
+import jenkins.plugins.openstack.compute.slaveopts.BootSource;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Provisioning throughput and latency against {@link FakeOpenstack}, with real agents connected.
+ *
+ * Not a regular test, it is run by <code>mvn test -Dbenchmark</code> only. Results are written to
+ * <code>target/provisioning-SCENARIO.json</code>. The scenario is configured with <code>benchmark.provisioning.*</code>
+ * properties: <code>nodes</code>, <code>bootTime</code> (median in ms), <code>apiLatency</code> (median in ms),
+ * <code>instanceCap</code> and <code>startTimeout</code>. The pre-creation scenario keeps <code>instancesMin</code>
+ * agents (all the <code>nodes</code> by default), running the pre-creation every <code>preCreationPeriod</code> ms.
+ */
+public class ProvisioningBenchmark {
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningBenchmark.class.getName());
+
+    private static final String PREFIX = "benchmark.provisioning.";
+    private static final String LABEL = "benchmark";
+
+    private final int nodes = Integer.getInteger(PREFIX + "nodes", 20);
+    private final long bootTime = Long.getLong(PREFIX + "bootTime", 5000);
+    private final long apiLatency = Long.getLong(PREFIX + "apiLatency", 50);
+    private final int instanceCap = Integer.getInteger(PREFIX + "instanceCap", nodes);
+    private final int instancesMin = Integer.getInteger(PREFIX + "instancesMin", nodes);
+    private final long preCreationPeriod = Long.getLong(PREFIX + "preCreationPeriod", TimeUnit.MINUTES.toMillis(2));
+    private final int startTimeout = Integer.getInteger(PREFIX + "startTimeout", 600000);
+
+    @Rule
+    public PluginTestRule j = new PluginTestRule();
+
+    @Rule
+    public FakeOpenstack fake = new FakeOpenstack();
+
+    private JCloudsCloud cloud;
+    private int cloudInstancesMin;
+
+    @Before
+    public void setUp() {
+        fake.bootTime(FakeOpenstack.Latency.logNormal(bootTime, 0.3));
+        fake.latency(FakeOpenstack.ANY, FakeOpenstack.Latency.logNormal(apiLatency, 0.5));
+        // Foreign servers listed by the plugin along with its own
+        fake.addServers(1000, Collections.emptyMap());
+
+        OpenstackCredentials.add(fake.getCredential());
+    }
+
+    private void createCloud(int instancesMin) {
+        SlaveOptions options = j.defaultSlaveOptions().getBuilder()
+                .bootSource(new BootSource.Image(FakeOpenstack.IMAGE))
+                .hardwareId("2")
+                .networkId(FakeOpenstack.NETWORK)
+                .floatingIpPool(FakeOpenstack.FIP_POOL)
+                .availabilityZone(null)
+                .instanceCap(instanceCap)
+                .instancesMin(instancesMin)
+                .startTimeout(startTimeout)
+                .fsRoot(new File(j.jenkins.getRootDir(), "agents").getAbsolutePath())
+                .launcherFactory(new TestCommandLauncherFactory())
+                .build()
+        ;
+        JCloudsSlaveTemplate template = new JCloudsSlaveTemplate("template", LABEL, SlaveOptions.empty());
+        cloud = new JCloudsCloud(
+                "fake", fake.getEndpoint(), false, FakeOpenstack.REGION, options, Collections.singletonList(template), fake.getCredential().getId()
+        );
+        cloudInstancesMin = instancesMin;
+        j.jenkins.clouds.add(cloud);
+    }
+
+    /**
+     * Builds queued at once, agents provisioned by NodeProvisioner calling {@link JCloudsCloud#provision}.
+     */
+    @Test
+    public void provisionForQueue() throws Exception {
+        createCloud(0);
+        List<FreeStyleProject> jobs = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            FreeStyleProject job = j.createFreeStyleProject("job" + i);
+            job.setAssignedLabel(Label.get(LABEL));
+            jobs.add(job);
+        }
+
+        Measurement measurement = new Measurement();
+        List<Future<FreeStyleBuild>> builds = new ArrayList<>();
+        for (FreeStyleProject job : jobs) {
+            builds.add(job.scheduleBuild2(0));
+        }
+
+        List<Long> waits = new ArrayList<>();
+        for (Future<FreeStyleBuild> build : builds) {
+            FreeStyleBuild run = j.assertBuildStatusSuccess(build.get(30, TimeUnit.MINUTES));
+            waits.add(run.getStartTimeInMillis() - measurement.started);
+        }
+        report("provisionForQueue", measurement, waits);
+    }
+
+    /**
+     * Agents provisioned concurrently by {@link JCloudsCloud#provisionSlaveExplicitly}, as when requested from UI.
+     */
+    @Test
+    public void provisionExplicitly() throws Exception {
+        createCloud(0);
+        JCloudsSlaveTemplate template = cloud.getTemplate("template");
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        try {
+            Measurement measurement = new Measurement();
+            List<Future<Long>> provisioned = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                provisioned.add(executor.submit(() -> {
+                    JCloudsSlave slave = cloud.provisionSlaveExplicitly(template);
+                    Computer computer = slave.toComputer();
+                    if (computer == null) throw new AssertionError("No computer for " + slave.getNodeName());
+                    computer.waitUntilOnline();
+                    return System.currentTimeMillis() - measurement.started;
+                }));
+            }
+
+            List<Long> waits = new ArrayList<>();
+            for (Future<Long> future : provisioned) {
+                waits.add(future.get(30, TimeUnit.MINUTES));
+            }
+            report("provisionExplicitly", measurement, waits);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Idle agents kept by {@link JCloudsPreCreationThread}, run periodically as the Jenkins scheduler does outside tests.
+     */
+    @Test
+    public void preCreateMinimum() throws Exception {
+        createCloud(instancesMin);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Measurement measurement = new Measurement();
+            scheduler.scheduleWithFixedDelay(j::triggerSlavePreCreation, 0, preCreationPeriod, TimeUnit.MILLISECONDS);
+
+            long deadline = measurement.started + TimeUnit.MINUTES.toMillis(30);
+            while (OnlineListener.online.size() < instancesMin) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError("Only " + OnlineListener.online.size() + " of " + instancesMin + " agents online");
+                }
+                Thread.sleep(100);
+            }
+
+            List<Long> waits = new ArrayList<>();
+            for (long online : OnlineListener.online.values()) {
+                waits.add(online - measurement.started);
+            }
+            report("preCreateMinimum", measurement, waits);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void report(String scenario, Measurement measurement, List<Long> waits) throws Exception {
+        long elapsed = System.currentTimeMillis() - measurement.started;
+        Collections.sort(waits);
+        long lastOnline = OnlineListener.online.values().stream().mapToLong(Long::longValue).max().orElse(measurement.started);
+        int online = OnlineListener.online.size();
+
+        JSONObject result = new JSONObject()
+                .element("scenario", scenario)
+                .element("nodes", nodes)
+                .element("bootTimeMs", bootTime)
+                .element("apiLatencyMs", apiLatency)
+                .element("instanceCap", instanceCap)
+                .element("instancesMin", cloudInstancesMin)
+                .element("elapsedMs", elapsed)
+                .element("agentsOnline", online)
+                .element("agentsOnlinePerMinute", online * 60_000.0 / Math.max(lastOnline - measurement.started, 1))
+                .element("waitForExecutorMs", new JSONObject()
+                        .element("p50", percentile(waits, 50))
+                        .element("p95", percentile(waits, 95))
+                        .element("p99", percentile(waits, 99))
+                        .element("max", waits.get(waits.size() - 1))
+                )
+                .element("apiCallsPerNode", (double) fake.getCalls() / Math.max(online, 1))
+                .element("apiCalls", fake.getCallsByOperation())
+                .element("peakThreads", measurement.threads.getPeakThreadCount())
+                .element("startThreads", measurement.startThreads)
+        ;
+        LOGGER.info("Provisioning benchmark " + result.toString(2));
+
+        FileUtils.writeStringToFile(
+                new File("target/provisioning-" + scenario + ".json"), result.toString(2), StandardCharsets.UTF_8
+        );
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    private final class Measurement {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final int startThreads;
+        private final long started;
+
+        private Measurement() {
+            threads.resetPeakThreadCount();
+            startThreads = threads.getThreadCount();
+            OnlineListener.online.clear();
+            fake.resetCalls();
+            started = System.currentTimeMillis();
+        }
+    }
+
+    @TestExtension
+    public static final class OnlineListener extends ComputerListener {
+        private static final Map<String, Long> online = new ConcurrentHashMap<>();
+
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            if (c instanceof JCloudsComputer) {
+                online.putIfAbsent(c.getName(), System.currentTimeMillis());
+            }
+        }
+    }
+}
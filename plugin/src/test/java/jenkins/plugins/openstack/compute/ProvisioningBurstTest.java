@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.plugins.openstack.compute;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProvisioningBurstTest {
+
+    @After
+    public void tearDown() {
+        ProvisioningBurst.initialSize = 10;
+        ProvisioningBurst.maxSize = 200;
+        ProvisioningBurst.failurePeriod = TimeUnit.MINUTES.toMillis(10);
+    }
+
+    @Test
+    public void growWithSuccessAndShrinkWithFailures() {
+        ProvisioningBurst burst = new ProvisioningBurst();
+        assertEquals(10, burst.getSize("t"));
+
+        for (int i = 0; i < 10; i++) {
+            burst.succeeded("t");
+        }
+        assertEquals(20, burst.getSize("t"));
+        assertEquals(10, burst.getSize("other"));
+
+        burst.failed("t");
+        assertEquals(10, burst.getSize("t"));
+        for (int i = 0; i < 10; i++) {
+            burst.failed("t");
+        }
+        assertEquals(1, burst.getSize("t"));
+    }
+
+    @Test
+    public void obeyLimits() {
+        ProvisioningBurst.initialSize = 3;
+        ProvisioningBurst.maxSize = 4;
+        ProvisioningBurst burst = new ProvisioningBurst();
+        assertEquals(3, burst.getSize("t"));
+
+        burst.succeeded("t");
+        burst.succeeded("t");
+        assertEquals(4, burst.getSize("t"));
+    }
+
+    @Test
+    public void doNotRaiseFailingTemplateToWarmPool() {
+        ProvisioningBurst burst = new ProvisioningBurst();
+        assertEquals(50, burst.getSize("t", 50));
+
+        burst.failed("t");
+        burst.failed("t");
+        assertEquals(2, burst.getSize("t", 50));
+        assertEquals(50, burst.getSize("other", 50));
+
+        ProvisioningBurst.failurePeriod = 0;
+        assertEquals(50, burst.getSize("t", 50));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.plugins.openstack.compute;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueueWaitControllerTest {
+
+    private static final long MIN = TimeUnit.MINUTES.toMillis(1);
+    private static final long SEC = TimeUnit.SECONDS.toMillis(1);
+
+    private final QueueWaitController controller = new QueueWaitController();
+    private final Map<String, Integer> targets = Collections.singletonMap("cloud/tmplt", 60);
+    private final Map<String, Integer> caps = Collections.singletonMap("cloud/tmplt", 10);
+
+    @Test
+    public void growWhileOverTargetAndShrinkWhenIdle() {
+        long now = 0;
+        for (int i = 0; i < 5; i++) {
+            now += 2 * MIN;
+            for (int j = 0; j < 10; j++) {
+                controller.record("cloud/tmplt", now, 3 * MIN); // 2 times over target
+            }
+            controller.update(targets, caps, now);
+        }
+        int saturated = controller.getWarmPool("cloud/tmplt");
+        assertEquals(10, saturated); // Capped
+
+        // Under the target
+        for (int i = 0; i < 3; i++) {
+            now += 20 * MIN;
+            controller.record("cloud/tmplt", now, 10 * SEC);
+            controller.update(targets, caps, now);
+        }
+        int reduced = controller.getWarmPool("cloud/tmplt");
+        assertTrue(String.valueOf(reduced), reduced < saturated && reduced > 0);
+
+        // Nothing waiting at all
+        for (int i = 0; i < 20; i++) {
+            now += 20 * MIN;
+            controller.update(targets, caps, now);
+        }
+        assertEquals(0, controller.getWarmPool("cloud/tmplt"));
+    }
+
+    @Test
+    public void forgetTemplatesWithoutTarget() {
+        controller.record("cloud/tmplt", 0, 10 * MIN);
+        controller.update(targets, caps, 0);
+        assertTrue(controller.getWarmPool("cloud/tmplt") > 0);
+
+        controller.update(Collections.emptyMap(), caps, 0);
+        assertEquals(0, controller.getWarmPool("cloud/tmplt"));
+        assertEquals(0, controller.getWarmPool("cloud/other"));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstack4j.model.compute.Server;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class ServerScopeBenchmark {
+
+    private Server node;
+    private Server run;
+    private Server time;
+
+    @Setup
+    public void setUp() {
+        node = server("node:jenkins-agent-42:1337");
+        run = server("run:folder/job:42");
+        time = server("time:2026-01-01 12:00:00");
+    }
+
+    @Benchmark
+    public ServerScope parseNode() {
+        return ServerScope.parse("node:jenkins-agent-42:1337");
+    }
+
+    @Benchmark
+    public ServerScope extractNode() {
+        return ServerScope.extract(node);
+    }
+
+    @Benchmark
+    public ServerScope extractRun() {
+        return ServerScope.extract(run);
+    }
+
+    @Benchmark
+    public ServerScope extractTime() {
+        return ServerScope.extract(time);
+    }
+
+    private Server server(String scope) {
+        // Stub only, so the invocations are not recorded
+        Server server = mock(Server.class, withSettings().stubOnly());
+        when(server.getName()).thenReturn("jenkins-agent-42");
+        when(server.getMetadata()).thenReturn(Collections.singletonMap(ServerScope.METADATA_KEY, scope));
+        return server;
+    }
+}
@@ -2,11 +2,15 @@ package jenkins.plugins.openstack.compute;
 
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.slaves.CloudProvisioningListener;
+import hudson.slaves.NodeProvisioner;
 import hudson.util.OneShotEvent;
 import jenkins.plugins.openstack.PluginTestRule;
 import jenkins.plugins.openstack.compute.internal.Openstack;
 import jenkins.plugins.openstack.compute.slaveopts.LauncherFactory;
 import jenkins.util.Timer;
+import org.jenkinsci.plugins.cloudstats.TrackedPlannedNode;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.WithoutJenkins;
@@ -16,6 +20,8 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -85,6 +91,21 @@ public class ServerScopeTest {
         assertFalse(new ServerScope.Node(js.getNodeName(), id).isOutOfScope(mock));
     }
 
+    @Test
+    public void nodeScopeOfActivityStartedAfterLookup() {
+        JCloudsCloud cloud = j.dummyCloud();
+        Id id = new Id(cloud.name, "bar");
+        ServerScope.Node scope = new ServerScope.Node("baz", id);
+        assertTrue(scope.isOutOfScope(mockServer));
+
+        // Reported the way NodeProvisioner does
+        List<NodeProvisioner.PlannedNode> plannedNodes = Collections.singletonList(new TrackedPlannedNode(id, 1, new CompletableFuture<>()));
+        for (CloudProvisioningListener cl : CloudProvisioningListener.all()) {
+            cl.onStarted(cloud, Label.get("label"), plannedNodes);
+        }
+        assertFalse(scope.isOutOfScope(mockServer));
+    }
+
     @Test
     public void avoidRunningOutOfScopeDuringProvisioning() throws Exception {
         OneShotEvent provisioning = new OneShotEvent();
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Effective options are computed as global defaults overridden by the cloud and then by the template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class SlaveOptionsBenchmark {
+
+    private final SlaveOptions defaults = SlaveOptions.builder()
+            .instanceCap(Integer.MAX_VALUE).instancesMin(0).startTimeout(600000).numExecutors(1)
+            .fsRoot("/jenkins").securityGroups("default").build()
+    ;
+    private final SlaveOptions cloud = SlaveOptions.builder()
+            .hardwareId("m1.large").networkId("public").floatingIpPool("ext").instanceCap(50).keyPairName("jenkins").build()
+    ;
+    private final SlaveOptions template = SlaveOptions.builder()
+            .availabilityZone("nova").instanceCap(10).numExecutors(4).jvmOptions("-Xmx1g").build()
+    ;
+
+    @Benchmark
+    public SlaveOptions override() {
+        return defaults.override(cloud).override(template);
+    }
+}
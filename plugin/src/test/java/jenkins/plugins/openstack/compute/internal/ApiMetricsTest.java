@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.api.exceptions.ClientResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ApiMetricsTest {
+
+    private final ApiMetrics metrics = ApiMetrics.get();
+
+    @After
+    public void tearDown() {
+        metrics.reset();
+    }
+
+    @Test
+    public void recordOutcomes() {
+        assertEquals("result", ApiMetrics.time("nova.servers.get", () -> "result"));
+        ApiMetrics.time("nova.servers.delete", () -> ActionResponse.actionFailed("Gone", 404));
+        try {
+            ApiMetrics.time("nova.servers.get", () -> { throw new ClientResponseException("Forbidden", 403); });
+            fail();
+        } catch (ClientResponseException expected) {
+            // Expected
+        }
+        try {
+            ApiMetrics.run("nova.servers.get", () -> { throw new IllegalStateException(); });
+            fail();
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+
+        assertEquals(3L, (long) metrics.getCallCounts().get("nova.servers.get"));
+        assertEquals(1L, (long) metrics.getCallCounts().get("nova.servers.delete"));
+        assertEquals(1L, (long) metrics.getOutcomeCounts().get("nova.servers.get:ok"));
+        assertEquals(1L, (long) metrics.getOutcomeCounts().get("nova.servers.get:403"));
+        assertEquals(1L, (long) metrics.getOutcomeCounts().get("nova.servers.get:error"));
+        assertEquals(1L, (long) metrics.getOutcomeCounts().get("nova.servers.delete:404"));
+    }
+
+    @Test
+    public void recordRetries() {
+        ApiMetrics.retry("neutron.floatingips.associate");
+        ApiMetrics.retry("neutron.floatingips.associate");
+
+        assertEquals(2L, (long) metrics.getRetryCounts().get("neutron.floatingips.associate"));
+        assertNull(metrics.getCallCounts().get("neutron.floatingips.associate"));
+    }
+}
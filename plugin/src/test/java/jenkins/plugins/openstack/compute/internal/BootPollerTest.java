@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.model.compute.Server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BootPollerTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void pollAllServersTogether() throws Exception {
+        Server building = server("a", Server.Status.BUILD);
+        Server active = server("a", Server.Status.ACTIVE);
+        Server failed = server("b", Server.Status.ERROR);
+        AtomicInteger calls = new AtomicInteger();
+        BootPoller poller = new BootPoller(since -> calls.incrementAndGet() == 1
+                ? Arrays.asList(building, failed)
+                : Collections.singletonList(active),
+                id -> { throw new AssertionError("Not expected to get " + id); },
+                executor
+        );
+
+        CompletableFuture<Server> a = poller.watch("a", 60_000);
+        CompletableFuture<Server> b = poller.watch("b", 60_000);
+
+        assertSame(failed, b.get(10, TimeUnit.SECONDS));
+        assertSame(active, a.get(10, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        Server building = server("a", Server.Status.BUILD);
+        BootPoller poller = new BootPoller(
+                since -> Collections.singletonList(building), id -> null, executor
+        );
+
+        assertSame(building, poller.watch("a", 0).get(10, TimeUnit.SECONDS));
+        assertNull(poller.watch("never-seen", 0).get(10, TimeUnit.SECONDS));
+    }
+
+    private Server server(String id, Server.Status status) {
+        Server mock = mock(Server.class);
+        when(mock.getId()).thenReturn(id);
+        when(mock.getStatus()).thenReturn(status);
+        return mock;
+    }
+}
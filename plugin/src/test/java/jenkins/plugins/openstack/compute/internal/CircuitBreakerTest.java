@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.api.exceptions.ClientResponseException;
+import org.openstack4j.api.exceptions.ConnectionException;
+import org.openstack4j.api.exceptions.ServerResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private final CircuitBreaker breaker = new CircuitBreaker();
+
+    @After
+    public void tearDown() {
+        CircuitBreaker.openPeriod = 30_000;
+    }
+
+    @Test
+    public void failureKinds() {
+        assertTrue(CircuitBreaker.isFailure(new ConnectionException("Connection refused", 0, null)));
+        assertTrue(CircuitBreaker.isFailure(new ServerResponseException("Service Unavailable", 503)));
+        assertFalse(CircuitBreaker.isFailure(new ClientResponseException("Not Found", 404)));
+        assertTrue(CircuitBreaker.isFailure(ActionResponse.actionFailed("Service Unavailable", 503)));
+        assertFalse(CircuitBreaker.isFailure(ActionResponse.actionFailed("Not Found", 404)));
+        assertFalse(CircuitBreaker.isFailure(ActionResponse.actionSuccess()));
+    }
+
+    @Test
+    public void openOnFailureRate() {
+        for (int i = 0; i < 5; i++) {
+            call(false);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        try {
+            breaker.permit();
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void closeAfterSuccessfulTrial() {
+        CircuitBreaker.openPeriod = 0;
+        for (int i = 0; i < 10; i++) {
+            call(true);
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Single trial at the time
+        assertTrue(breaker.permit());
+        try {
+            breaker.permit();
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            // Expected
+        }
+
+        breaker.record(true, true);
+        assertTrue(breaker.permit());
+        breaker.record(true, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.permit());
+    }
+
+    private void call(boolean failed) {
+        breaker.record(breaker.permit(), failed);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.api.OSClient;
+import org.openstack4j.model.identity.v3.Token;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClientProviderTest {
+
+    private final List<Runnable> renewals = new ArrayList<>();
+    private final AtomicInteger authentications = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        Openstack.tokenRenewalRetry = TimeUnit.SECONDS.toMillis(30);
+    }
+
+    @Test
+    public void reuseClientWhileThreadSessionUnchanged() {
+        SessionProvider provider = new SessionProvider(token());
+
+        OSClient<?> client = provider.get();
+        assertSame(client, provider.get());
+        assertSame(client, provider.get());
+
+        assertEquals(1, provider.getMisses());
+        assertEquals(2, provider.getHits());
+    }
+
+    @Test
+    public void recreateClientWhenThreadSessionReplaced() {
+        SessionProvider provider = new SessionProvider(token());
+
+        OSClient<?> client = provider.get();
+        OSFactory.clientFromToken(token()); // Other client took over the session of this thread
+
+        OSClient<?> recreated = provider.get();
+        assertNotSame(client, recreated);
+        assertSame(recreated, OSClientSession.getCurrent());
+        assertSame(recreated, provider.get());
+
+        assertEquals(2, provider.getMisses());
+        assertEquals(1, provider.getHits());
+    }
+
+    @Test
+    public void recreateClientWhenAuthChanges() {
+        SessionProvider provider = new SessionProvider(token());
+
+        OSClient<?> client = provider.get();
+        provider.token = token();
+
+        OSClient<?> recreated = provider.get();
+        assertNotSame(client, recreated);
+        assertSame(provider.token, ((OSClient.OSClientV3) recreated).getToken());
+
+        assertEquals(2, provider.getMisses());
+        assertEquals(0, provider.getHits());
+    }
+
+    @Test
+    public void createClientPerThread() throws Exception {
+        SessionProvider provider = new SessionProvider(token());
+
+        OSClient<?> client = provider.get();
+        OSClient<?> other = executor.submit(provider::get).get(10, TimeUnit.SECONDS);
+        assertNotSame(client, other);
+        assertSame(client, provider.get());
+        assertSame(other, executor.submit(provider::get).get(10, TimeUnit.SECONDS));
+
+        assertEquals(2, provider.getMisses());
+        assertEquals(2, provider.getHits());
+    }
+
+    @Test
+    public void doNotRenewBeforeThreshold() {
+        TokenProvider provider = new TokenProvider(in(Openstack.tokenRenewalAhead + 60_000), this::authenticate, renewals::add);
+
+        provider.get();
+
+        assertTrue(renewals.isEmpty());
+    }
+
+    @Test
+    public void renewInBackgroundWithinThreshold() {
+        Date expires = in(Openstack.tokenRenewalAhead - 60_000);
+        TokenProvider provider = new TokenProvider(expires, this::authenticate, renewals::add);
+
+        provider.get();
+        assertEquals(1, renewals.size());
+        assertEquals("Old token used until renewed", expires, provider.getExpires());
+
+        renewals.remove(0).run();
+        assertEquals(1, authentications.get());
+        assertTrue(provider.getExpires().after(expires));
+    }
+
+    @Test
+    public void collapseConcurrentRenewals() {
+        TokenProvider provider = new TokenProvider(in(Openstack.tokenRenewalAhead - 60_000), this::authenticate, renewals::add);
+
+        provider.get();
+        provider.get();
+        provider.get();
+        assertEquals(1, renewals.size());
+
+        renewals.remove(0).run();
+        provider.get();
+        assertTrue(renewals.isEmpty());
+        assertEquals(1, authentications.get());
+    }
+
+    @Test
+    public void backOffAfterFailedRenewal() {
+        TokenProvider provider = new TokenProvider(in(Openstack.tokenRenewalAhead - 60_000), () -> {
+            authentications.incrementAndGet();
+            throw new RuntimeException("Keystone down");
+        }, renewals::add);
+
+        provider.get();
+        renewals.remove(0).run();
+        assertEquals(1, authentications.get());
+
+        provider.get();
+        assertTrue("Not retried within the back-off", renewals.isEmpty());
+
+        Openstack.tokenRenewalRetry = 0;
+        provider.get();
+        assertEquals(1, renewals.size());
+    }
+
+    @Test
+    public void waitForRenewalOfExpiredToken() {
+        TokenProvider provider = new TokenProvider(in(-1000), () -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return authenticate();
+        }, r -> new Thread(r).start());
+
+        provider.get();
+
+        assertEquals(1, authentications.get());
+        assertTrue(provider.getExpires().after(new Date()));
+    }
+
+    @Test
+    public void failWhenExpiredTokenCanNotBeRenewed() {
+        TokenProvider provider = new TokenProvider(in(-1000), () -> {
+            authentications.incrementAndGet();
+            throw new RuntimeException("Keystone down");
+        }, Runnable::run);
+
+        for (int i = 1; i <= 2; i++) {
+            try {
+                provider.get();
+                fail();
+            } catch (RuntimeException ex) {
+                assertEquals("Keystone down", ex.getMessage());
+            }
+            // Expired token is renewed despite the back-off
+            assertEquals(i, authentications.get());
+        }
+    }
+
+    private @Nonnull OSClient<?> authenticate() {
+        authentications.incrementAndGet();
+        Token token = mock(Token.class);
+        when(token.getExpires()).thenReturn(in(TimeUnit.HOURS.toMillis(1)));
+        OSClient.OSClientV3 client = mock(OSClient.OSClientV3.class);
+        when(client.getToken()).thenReturn(token);
+        return client;
+    }
+
+    private static @Nonnull Token token() {
+        Token token = mock(Token.class);
+        when(token.getExpires()).thenReturn(in(TimeUnit.HOURS.toMillis(1)));
+        return token;
+    }
+
+    private static @Nonnull Date in(long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+
+    private static final class TokenProvider extends Openstack.ClientProvider {
+        private final OSClient<?> client = mock(OSClient.OSClientV3.class);
+        private volatile @Nonnull Date expires;
+
+        private TokenProvider(@Nonnull Date expires, @Nonnull Supplier<OSClient<?>> authenticator, @Nonnull Executor renewer) {
+            super(authenticator, renewer);
+            this.expires = expires;
+        }
+
+        @Override protected @Nonnull OSClient<?> create() {
+            return client;
+        }
+
+        @Override protected @CheckForNull Object getAuth() {
+            return expires;
+        }
+
+        @Override protected @Nonnull Date getExpires() {
+            return expires;
+        }
+
+        @Override protected void update(@Nonnull OSClient<?> client) {
+            expires = ((OSClient.OSClientV3) client).getToken().getExpires();
+        }
+
+        @Override public @Nonnull String getInfo() {
+            return "";
+        }
+    }
+
+    /**
+     * Creating real openstack4j sessions, the way the providers for Keystone v3 do.
+     */
+    private static final class SessionProvider extends Openstack.ClientProvider {
+        private volatile @Nonnull Token token;
+
+        private SessionProvider(@Nonnull Token token) {
+            super(null, Runnable::run);
+            this.token = token;
+        }
+
+        @Override protected @Nonnull OSClient<?> create() {
+            return OSFactory.clientFromToken(token);
+        }
+
+        @Override protected @CheckForNull Object getAuth() {
+            return token;
+        }
+
+        @Override protected @Nonnull Date getExpires() {
+            return token.getExpires();
+        }
+
+        @Override protected void update(@Nonnull OSClient<?> client) {
+            token = ((OSClient.OSClientV3) client).getToken();
+        }
+
+        @Override public @Nonnull String getInfo() {
+            return "";
+        }
+    }
+}
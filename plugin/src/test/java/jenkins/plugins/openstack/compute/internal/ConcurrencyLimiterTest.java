@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.api.exceptions.ClientResponseException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimiterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        ConcurrencyLimiter.initialLimit = 20;
+        ApiMetrics.get().reset();
+    }
+
+    @Test
+    public void adaptToResponses() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        assertEquals(20, limiter.getLimit());
+
+        for (int i = 0; i < 40; i++) {
+            limiter.call("nova.servers.get", () -> "ok");
+        }
+        assertEquals(21, limiter.getLimit());
+
+        try {
+            limiter.call("nova.servers.list", () -> { throw new ClientResponseException("Too Many Requests", 429); });
+            fail();
+        } catch (ClientResponseException expected) {
+            // Expected
+        }
+        assertEquals(15, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void prioritizeDeletion() throws Exception {
+        ConcurrencyLimiter.initialLimit = 1;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<?> slow = executor.submit(() -> limiter.call("nova.servers.boot", () -> {
+            running.countDown();
+            return await(finish);
+        }));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        Future<String> read = executor.submit(() -> limiter.call("nova.servers.list", () -> "listed"));
+        Future<String> delete = executor.submit(() -> limiter.call("nova.servers.delete", () -> "deleted"));
+        Future<String> cleanup = executor.submit(() -> {
+            String[] ret = new String[1];
+            ConcurrencyLimiter.prioritized(() -> ret[0] = limiter.call("neutron.floatingips.list", () -> "cleaned"));
+            return ret[0];
+        });
+
+        assertEquals("deleted", delete.get(10, TimeUnit.SECONDS));
+        assertEquals("cleaned", cleanup.get(10, TimeUnit.SECONDS));
+        try {
+            read.get(500, TimeUnit.MILLISECONDS);
+            fail("Read admitted over the limit");
+        } catch (TimeoutException expected) {
+            // Expected
+        }
+
+        finish.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        assertEquals("listed", read.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void doNotShrinkOnSlowFullListingAfterFastDeltas() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        for (int i = 0; i < 10; i++) {
+            limiter.call("nova.servers.list.changes", () -> "delta");
+        }
+        int limit = limiter.getLimit();
+
+        limiter.call("nova.servers.list", () -> sleep(1100));
+        limiter.call("nova.servers.list", () -> sleep(1100));
+        assertEquals(limit, limiter.getLimit());
+
+        // Delta taking as long as the full listing is a sign of overload
+        limiter.call("nova.servers.list.changes", () -> sleep(1100));
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return "listed";
+        } catch (InterruptedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
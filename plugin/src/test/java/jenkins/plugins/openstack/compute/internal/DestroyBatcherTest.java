@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import hudson.util.OneShotEvent;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DestroyBatcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        DestroyBatcher.window = 200;
+    }
+
+    @Test
+    public void lookupFipsOncePerBatch() throws Exception {
+        List<Set<String>> lookups = new CopyOnWriteArrayList<>();
+        DestroyBatcher batcher = new DestroyBatcher(ids -> {
+            lookups.add(new HashSet<>(ids));
+            return Collections.singletonMap("a", Arrays.asList("fip-a1", "fip-a2"));
+        });
+
+        // Destruction in progress indicates more are likely to follow
+        OneShotEvent deleting = new OneShotEvent();
+        OneShotEvent release = new OneShotEvent();
+        Future<?> x = executor.submit(() -> batcher.destroy("x", fips -> {
+            deleting.signal();
+            try {
+                release.block();
+            } catch (InterruptedException ex) {
+                throw new AssertionError(ex);
+            }
+        }));
+        deleting.block(10_000);
+
+        Map<String, List<String>> destroyed = new ConcurrentHashMap<>();
+        Future<?> a = executor.submit(() -> batcher.destroy("a", fips -> destroyed.put("a", fips)));
+        Future<?> b = executor.submit(() -> batcher.destroy("b", fips -> destroyed.put("b", fips)));
+        a.get(10, TimeUnit.SECONDS);
+        b.get(10, TimeUnit.SECONDS);
+        release.signal();
+        x.get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, lookups.size());
+        assertEquals(Collections.singleton("x"), lookups.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), lookups.get(1));
+        assertEquals(Arrays.asList("fip-a1", "fip-a2"), destroyed.get("a"));
+        assertEquals(Collections.emptyList(), destroyed.get("b"));
+    }
+
+    @Test
+    public void doNotWaitForBatchWhenAlone() {
+        DestroyBatcher.window = 60_000;
+        DestroyBatcher batcher = new DestroyBatcher(ids -> Collections.emptyMap());
+
+        long start = System.currentTimeMillis();
+        batcher.destroy("a", fips -> {});
+        assertThat(System.currentTimeMillis() - start, lessThan(10_000L));
+    }
+
+    @Test
+    public void reportFailurePerServer() throws Exception {
+        DestroyBatcher batcher = new DestroyBatcher(ids -> Collections.emptyMap());
+
+        Future<?> a = executor.submit(() -> batcher.destroy("a", fips -> { throw new Openstack.ActionFailed("Unable to delete a"); }));
+        Future<?> b = executor.submit(() -> batcher.destroy("b", fips -> {}));
+
+        b.get(10, TimeUnit.SECONDS);
+        try {
+            a.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause().getMessage(), containsString("Unable to delete a"));
+        }
+    }
+
+    @Test
+    public void lookupFailureReportedToBatch() {
+        DestroyBatcher batcher = new DestroyBatcher(ids -> { throw new Openstack.ActionFailed("Neutron down"); });
+        try {
+            batcher.destroy("a", fips -> fail("Not expected to destroy"));
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            assertThat(ex.getMessage(), containsString("Neutron down"));
+        }
+    }
+}
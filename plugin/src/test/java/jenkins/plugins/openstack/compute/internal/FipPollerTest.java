@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.model.network.NetFloatingIP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FipPollerTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void ready() {
+        assertFalse(FipPoller.isReady(null));
+        assertFalse(FipPoller.isReady(fip("a", "DOWN", "10.0.0.1")));
+        assertFalse(FipPoller.isReady(fip("a", "ACTIVE", null)));
+        assertTrue(FipPoller.isReady(fip("a", "ACTIVE", "10.0.0.1")));
+        assertTrue(FipPoller.isReady(fip("a", null, "10.0.0.1")));
+    }
+
+    @Test
+    public void pollAllIpsTogether() throws Exception {
+        NetFloatingIP down = fip("a", "DOWN", "10.0.0.1");
+        NetFloatingIP activeA = fip("a", "ACTIVE", "10.0.0.1");
+        NetFloatingIP activeB = fip("b", "ACTIVE", "10.0.0.2");
+        AtomicInteger calls = new AtomicInteger();
+        FipPoller poller = new FipPoller(ids -> calls.incrementAndGet() == 1
+                ? Arrays.asList(down, activeB)
+                : Arrays.asList(activeA, activeB),
+                id -> { throw new AssertionError("Not expected to get " + id); },
+                executor
+        );
+
+        CompletableFuture<NetFloatingIP> a = poller.watch("a", 60_000);
+        CompletableFuture<NetFloatingIP> b = poller.watch("b", 60_000);
+
+        assertSame(activeB, b.get(10, TimeUnit.SECONDS));
+        assertSame(activeA, a.get(10, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        NetFloatingIP down = fip("a", "DOWN", null);
+        FipPoller poller = new FipPoller(
+                ids -> { throw new AssertionError("Not expected to list"); }, id -> down, executor
+        );
+
+        assertNull(poller.watch("a", 0).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void listOnlyWatchedAndKeepBackoffOfRunningPolling() {
+        ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+        List<Runnable> ticks = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+        when(timer.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS))).thenAnswer(invocation -> {
+            ticks.add((Runnable) invocation.getArguments()[0]);
+            delays.add((Long) invocation.getArguments()[1]);
+            return null;
+        });
+        List<Set<String>> listed = new ArrayList<>();
+        FipPoller poller = new FipPoller(ids -> {
+            listed.add(new HashSet<>(ids));
+            return Collections.emptyList();
+        }, id -> { throw new AssertionError("Not expected to get " + id); }, timer);
+
+        poller.watch("a", 60_000);
+        poller.watch("b", 60_000);
+        ticks.get(0).run();
+        poller.watch("c", 60_000);
+        ticks.get(1).run();
+
+        assertEquals(Arrays.asList(
+                new HashSet<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList("a", "b", "c"))
+        ), listed);
+        assertEquals(Arrays.asList(FipPoller.minInterval, FipPoller.minInterval * 2, FipPoller.minInterval * 4), delays);
+    }
+
+    private NetFloatingIP fip(String id, String status, String fixedIp) {
+        NetFloatingIP mock = mock(NetFloatingIP.class);
+        when(mock.getId()).thenReturn(id);
+        when(mock.getStatus()).thenReturn(status);
+        when(mock.getFixedIpAddress()).thenReturn(fixedIp);
+        return mock;
+    }
+}
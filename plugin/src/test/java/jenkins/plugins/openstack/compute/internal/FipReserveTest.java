@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FipReserveTest {
+
+    private final Openstack os = mock(Openstack.class);
+    private final FipReserve reserve = new FipReserve(os);
+
+    @Before
+    public void setUp() {
+        FipReserve.lowWatermark = 1;
+        FipReserve.highWatermark = 2;
+        when(os.createReserveFip("public")).thenReturn("created");
+    }
+
+    @After
+    public void tearDown() {
+        FipReserve.lowWatermark = 0;
+        FipReserve.highWatermark = 0;
+    }
+
+    @Test
+    public void reclaimExcessiveAndUnused() {
+        Map<String, List<String>> existing = new HashMap<>();
+        existing.put("public", Arrays.asList("a", "b", "c"));
+        existing.put("removed", Collections.singletonList("d"));
+        when(os.listReserveFips()).thenReturn(existing);
+
+        reserve.reclaim(Collections.singletonList("public"));
+
+        verify(os).destroyFip("c");
+        verify(os).destroyFip("d");
+        verify(os, never()).createReserveFip("public");
+
+        assertEquals("a", reserve.take("public"));
+        assertEquals("b", reserve.take("public"));
+        verify(os, timeout(5000).atLeastOnce()).createReserveFip("public");
+    }
+
+    @Test
+    public void releaseAllWhenDisabled() {
+        FipReserve.highWatermark = 0;
+        when(os.listReserveFips()).thenReturn(Collections.singletonMap("public", Arrays.asList("a", "b")));
+
+        reserve.reclaim(Collections.singletonList("public"));
+
+        verify(os).destroyFip("a");
+        verify(os).destroyFip("b");
+        assertNull(reserve.take("public"));
+    }
+
+    @Test
+    public void doNotReturnTakenToReserve() {
+        when(os.createReserveFip("public")).thenThrow(new Openstack.ActionFailed("Quota exceeded"));
+        when(os.listReserveFips()).thenReturn(Collections.singletonMap("public", Collections.singletonList("a")));
+        reserve.reclaim(Collections.singletonList("public"));
+        assertEquals("a", reserve.take("public"));
+
+        // Listed as free as the association is not completed yet
+        reserve.reclaim(Collections.singletonList("public"));
+        assertNull(reserve.take("public"));
+        verify(os, never()).destroyFip("a");
+    }
+}
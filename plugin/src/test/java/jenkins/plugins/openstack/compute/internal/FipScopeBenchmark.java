@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+
+/**
+ * Scoping all floating IPs of a tenant, as done by the cleanup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class FipScopeBenchmark {
+
+    private static final int FIPS = 2000;
+    private static final String URL = "https://some-quite-long-jenkins-url-to-make-sure-it-fits.acme.com:8080/jenkins";
+    private static final String FINGERPRINT = "3919bce9a2f5fc4f730bd6462e23454ecb1fb089";
+
+    private final String[] descriptions = new String[FIPS];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < FIPS; i++) {
+            String serverId = UUID.randomUUID().toString();
+            switch (i % 4) {
+                case 0: // Ours
+                    descriptions[i] = "{ 'jenkins-instance': '" + URL + "', 'jenkins-identity': '" + FINGERPRINT + "', 'jenkins-scope': 'server:" + serverId + "' }";
+                break;
+                case 1: // Other Jenkins instance
+                    descriptions[i] = "{ 'jenkins-identity': 'bc1fb0893919bce9a2f5fc4f730bd6462e23454e', 'jenkins-scope': 'server:" + serverId + "' }";
+                break;
+                case 2:
+                    descriptions[i] = FipScope.getReserveDescription(URL, FINGERPRINT, "public");
+                break;
+                default: // Not created by Jenkins
+                    descriptions[i] = "";
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIPS)
+    public void getServerId(Blackhole bh) {
+        for (String description : descriptions) {
+            bh.consume(FipScope.getServerId(URL, FINGERPRINT, description));
+        }
+    }
+}
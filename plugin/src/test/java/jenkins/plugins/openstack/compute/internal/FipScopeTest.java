@@ -66,4 +66,15 @@ public class FipScopeTest {
         assertNull(FipScope.getServerId(URL, FINGERPRINT, ""));
         assertNull(FipScope.getServerId(URL, FINGERPRINT, null));
     }
+
+    @Test
+    public void reserve() {
+        String description = FipScope.getReserveDescription(URL, FINGERPRINT, "public");
+        assertThat(description.length(), lessThanOrEqualTo(FipScope.MAX_DESCRIPTION_LENGTH));
+        assertEquals("public", FipScope.getReservePool(URL, FINGERPRINT, description));
+        assertNull("Reserved IP is not leaked", FipScope.getServerId(URL, FINGERPRINT, description));
+
+        assertNull(FipScope.getReservePool(URL, FINGERPRINT, EXPECTED_DESCRIPTION));
+        assertNull(FipScope.getReservePool(URL, "different-than-expected", description));
+    }
 }
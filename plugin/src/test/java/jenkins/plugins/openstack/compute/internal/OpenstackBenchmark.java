@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.openstack.compute.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstack4j.model.compute.Address;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.openstack.compute.domain.NovaAddresses;
+import org.openstack4j.openstack.compute.domain.NovaAddresses.NovaAddress;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class OpenstackBenchmark {
+
+    @Param({"4", "64"})
+    public int networks;
+
+    private Server floating;
+    private Server fixed;
+
+    @Setup
+    public void setUp() {
+        floating = server(true);
+        fixed = server(false);
+    }
+
+    @Benchmark
+    public Address accessIpFloating() {
+        return Openstack.getAccessIpAddressObject(floating);
+    }
+
+    @Benchmark
+    public Address accessIpFixed() {
+        return Openstack.getAccessIpAddressObject(fixed);
+    }
+
+    // Each network has fixed IPv6 and IPv4, the floating IPv4 is in the last one
+    private Server server(boolean withFloating) {
+        NovaAddresses addresses = new NovaAddresses();
+        for (int i = 0; i < networks; i++) {
+            String network = "network-" + i;
+            addresses.add(network, address("fd00::" + i, 6, "fixed"));
+            addresses.add(network, address("10.0.0." + i, 4, "fixed"));
+            if (withFloating && i == networks - 1) {
+                addresses.add(network, address("42.0.0." + i, 4, "floating"));
+            }
+        }
+
+        // Stub only, so the invocations are not recorded
+        Server server = mock(Server.class, withSettings().stubOnly());
+        when(server.getAddresses()).thenReturn(addresses);
+        return server;
+    }
+
+    private NovaAddress address(String ip, int version, String type) {
+        NovaAddress addr = mock(NovaAddress.class, withSettings().stubOnly());
+        when(addr.getAddr()).thenReturn(ip);
+        when(addr.getVersion()).thenReturn(version);
+        when(addr.getType()).thenReturn(type);
+        return addr;
+    }
+}
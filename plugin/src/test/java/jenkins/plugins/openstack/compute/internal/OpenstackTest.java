@@ -6,12 +6,15 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.openstack4j.api.OSClient;
+import org.openstack4j.api.compute.ServerService;
 import org.openstack4j.api.compute.ext.ZoneService;
+import org.openstack4j.api.exceptions.ClientResponseException;
 import org.openstack4j.api.image.v2.ImageService;
 import org.openstack4j.api.networking.NetFloatingIPService;
 import org.openstack4j.api.networking.NetworkService;
@@ -60,6 +63,59 @@ public class OpenstackTest {
         openstack = spy(new Openstack(osClient));
     }
 
+    @After
+    public void tearDown() {
+        CircuitBreaker.minCalls = 10;
+        CircuitBreaker.openPeriod = 30_000;
+        Openstack.serverPageSize = 200;
+    }
+
+    @Test
+    public void countServerErrorResponsesAsApiFailures() {
+        CircuitBreaker.minCalls = 1;
+        NetFloatingIPService fips = osClient.networking().floatingip();
+
+        when(fips.delete("fip")).thenReturn(ActionResponse.actionFailed("Not Found", 404));
+        openstack.destroyFip("fip");
+        assertThat(openstack.getApiState(), equalTo(CircuitBreaker.State.CLOSED));
+
+        when(fips.delete("fip")).thenReturn(ActionResponse.actionFailed("Service Unavailable", 503));
+        try {
+            openstack.destroyFip("fip");
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            // Expected
+        }
+        assertThat(openstack.getApiState(), equalTo(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void keepOpenWhenTrialFailsWithoutResponse() {
+        CircuitBreaker.minCalls = 1;
+        CircuitBreaker.openPeriod = 0;
+        NetFloatingIPService fips = osClient.networking().floatingip();
+        when(fips.delete("fip")).thenReturn(ActionResponse.actionFailed("Service Unavailable", 503));
+        try {
+            openstack.destroyFip("fip");
+            fail();
+        } catch (Openstack.ActionFailed ex) {
+            // Expected
+        }
+        assertThat(openstack.getApiState(), equalTo(CircuitBreaker.State.HALF_OPEN));
+
+        // Such as the limiter timing out waiting for permit
+        doThrow(new IllegalStateException("No response")).when(fips).delete("fip");
+        try {
+            openstack.destroyFip("fip");
+            fail();
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+
+        CircuitBreaker.openPeriod = 30_000;
+        assertThat(openstack.getApiState(), equalTo(CircuitBreaker.State.OPEN));
+    }
+
     @Test
     public void getImagesReturnsImagesIndexedByNameSortedByAge() {
         final Image mockImageWithNullName = mock(Image.class);
@@ -242,6 +298,20 @@ public class OpenstackTest {
         assertThat(new ArrayList<>(actual), equalTo(expected));
     }
 
+    @Test
+    public void getImageIdsForResolvesOncePerProvisioningRound() {
+        final ImageService mockIS = mock(ImageService.class);
+        when(mockIS.list(anyMap())).thenReturn(Collections.EMPTY_LIST);
+        when(osClient.imagesV2()).thenReturn(mockIS);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(openstack.getImageIdsFor("Foo"), equalTo(Collections.emptyList()));
+        }
+
+        verify(mockIS).list(anyMap());
+        verifyNoMoreInteractions(mockIS);
+    }
+
     @Test
     public void getVolumeSnapshotIdsForGivenNameThenReturnsMatchingVolumeSnapshotIdsSortedByAge() {
         final VolumeSnapshot mockVolumeSnapshotNamedFoo = mock(VolumeSnapshot.class);
@@ -472,7 +542,7 @@ public class OpenstackTest {
         when(client.compute().servers().delete(server.getId())).thenAnswer(sequencer.deleteServer());
 
         NetFloatingIPService fips = client.networking().floatingip();
-        when(fips.list()).thenAnswer(sequencer.getAllFips());
+        when(fips.list(anyMap())).thenAnswer(sequencer.getAllFips());
         when(fips.delete(anyString())).thenAnswer(sequencer.deleteFip());
         PortService ports = client.networking().port();
         when(ports.list((PortListOptions) any(PortListOptions.class))).thenAnswer(sequencer.getAllPorts());
@@ -485,6 +555,136 @@ public class OpenstackTest {
         verify(fips, never()).delete("keep-me");
     }
 
+    @Test
+    public void listOwnedServersByTag() {
+        ServerService servers = osClient.compute().servers();
+        ServerTags tags = ownerTags();
+        Server ours = ownedServer("ours");
+        when(servers.list(anyMap())).thenAnswer(pages(ours));
+        doAnswer(pages()).when(tags).list(anyMap());
+
+        // Servers not tagged yet are found by the initial sweep and tagged
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(tags).add("ours", "jenkins-fingerprint");
+        verify(servers, times(2)).list(anyMap());
+
+        doAnswer(pages(ours)).when(tags).list(anyMap());
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(servers, times(2)).list(anyMap());
+    }
+
+    @Test
+    public void listAllServersWhenTagsNotSupported() {
+        ServerService servers = osClient.compute().servers();
+        ServerTags tags = ownerTags();
+        Server ours = ownedServer("ours");
+        when(servers.list(anyMap())).thenAnswer(pages(ours));
+        doThrow(new ClientResponseException("Version 2.26 is not supported by the API", 406)).when(tags).list(anyMap());
+
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(tags, times(1)).list(anyMap());
+        verify(tags, never()).add(anyString(), anyString());
+        verify(servers, times(4)).list(anyMap());
+    }
+
+    @Test
+    public void keepUsingTagsAfterTransientFailure() {
+        ServerService servers = osClient.compute().servers();
+        ServerTags tags = ownerTags();
+        Server ours = ownedServer("ours");
+        when(servers.list(anyMap())).thenAnswer(pages(ours));
+
+        // Throttled before tags were known to work
+        doThrow(new ClientResponseException("Too many requests", 429)).when(tags).list(anyMap());
+        openstack.listOwnedServers();
+        doAnswer(pages(ours)).when(tags).list(anyMap());
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(servers, times(2)).list(anyMap());
+
+        // Not found once tags worked
+        doThrow(new ClientResponseException("Not found", 404)).when(tags).list(anyMap());
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(servers, times(4)).list(anyMap());
+        doAnswer(pages(ours)).when(tags).list(anyMap());
+        assertThat(openstack.listOwnedServers(), equalTo(Collections.singletonList(ours)));
+        verify(servers, times(4)).list(anyMap());
+    }
+
+    @Test
+    public void listAllPagesDroppingForeignServers() {
+        Openstack.serverPageSize = 2;
+        ServerService servers = osClient.compute().servers();
+        ServerTags tags = ownerTags();
+        doThrow(new ClientResponseException("Version 2.26 is not supported by the API", 406)).when(tags).list(anyMap());
+        Server a = ownedServer("a");
+        Server b = ownedServer("b");
+        Server c = ownedServer("c");
+        Server x = foreignServer("x");
+        Server y = foreignServer("y");
+        Map<String, List<Server>> pagesByMarker = new HashMap<>();
+        pagesByMarker.put(null, Arrays.asList(a, x));
+        pagesByMarker.put("x", Collections.singletonList(y)); // Short page, Nova can cap the limit
+        pagesByMarker.put("y", Arrays.asList(b, c));
+        pagesByMarker.put("c", Collections.emptyList());
+        List<Map<String, String>> queries = new ArrayList<>();
+        when(servers.list(anyMap())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Map<String, String> query = new HashMap<>((Map<String, String>) invocation.getArguments()[0]);
+            queries.add(query);
+            return pagesByMarker.get(query.get("marker"));
+        });
+
+        assertThat(openstack.listOwnedServers(), equalTo(Arrays.asList(a, b, c)));
+
+        assertThat(queries, equalTo(Arrays.asList(page(null), page("x"), page("y"), page("c"))));
+    }
+
+    private static Map<String, String> page(String marker) {
+        Map<String, String> query = new HashMap<>();
+        query.put("limit", "2");
+        if (marker != null) {
+            query.put("marker", marker);
+        }
+        return query;
+    }
+
+    private ServerTags ownerTags() {
+        ServerTags tags = mock(ServerTags.class);
+        doReturn(tags).when(openstack).serverTags();
+        doReturn("https://jenkins.example.com/").when(openstack).instanceUrl();
+        doReturn("fingerprint").when(openstack).instanceFingerprint();
+        return tags;
+    }
+
+    private static Server ownedServer(String id) {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(Openstack.FINGERPRINT_KEY_URL, "https://jenkins.example.com/");
+        metadata.put(Openstack.FINGERPRINT_KEY_FINGERPRINT, "fingerprint");
+        Server server = mock(Server.class);
+        when(server.getId()).thenReturn(id);
+        when(server.getMetadata()).thenReturn(metadata);
+        return server;
+    }
+
+    private static Server foreignServer(String id) {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(Openstack.FINGERPRINT_KEY_URL, "https://other-jenkins.example.com/");
+        metadata.put(Openstack.FINGERPRINT_KEY_FINGERPRINT, "other-fingerprint");
+        Server server = mock(Server.class);
+        when(server.getId()).thenReturn(id);
+        when(server.getMetadata()).thenReturn(metadata);
+        return server;
+    }
+
+    // Single page of servers, then nothing past the marker
+    private static Answer<List<? extends Server>> pages(Server... servers) {
+        return invocation -> ((Map<?, ?>) invocation.getArguments()[0]).containsKey("marker")
+                ? Collections.emptyList()
+                : Arrays.asList(servers)
+        ;
+    }
+
     /**
      * Track the state of the openstack to be manifested by different client calls;
      */
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.plugins.openstack.compute.internal;
+
+import hudson.util.OneShotEvent;
+import org.junit.After;
+import org.junit.Test;
+import org.openstack4j.model.compute.AbsoluteLimit;
+import org.openstack4j.model.compute.Flavor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QuotaTrackerTest {
+
+    private final Flavor flavor = flavor(2, 4096);
+    private final Map<String, Flavor> flavors = Collections.singletonMap("f", flavor);
+
+    @After
+    public void tearDown() {
+        QuotaTracker.staleness = 30_000;
+    }
+
+    @Test
+    public void takeWhileFits() {
+        QuotaTracker tracker = new QuotaTracker(() -> limits(10, 8, 5, 10, -1, 0, 0, 0));
+
+        QuotaTracker.Headroom headroom = tracker.getHeadroom(flavors);
+        assertNotNull(headroom.take("f", false)); // 5 cores left
+        assertNotNull(headroom.take("f", false)); // 3 cores left
+        assertNull(headroom.take("f", false));
+        assertNotNull(headroom.take("unknown", false)); // Only instances counted
+        assertNotNull(headroom.take(null, true)); // Floating IPs not reported
+        assertNull(headroom.take(null, false)); // Instances exhausted
+    }
+
+    @Test
+    public void subtractInFlight() {
+        QuotaTracker.staleness = 0;
+        AtomicInteger used = new AtomicInteger(0);
+        QuotaTracker tracker = new QuotaTracker(() -> limits(2, used.get(), -1, 0, -1, 0, 2, used.get()));
+        tracker.getHeadroom(flavors);
+
+        QuotaTracker.Reservation server = tracker.reserveServer(() -> flavor);
+        QuotaTracker.Reservation fip = tracker.reserveFloatingIp();
+        QuotaTracker.Headroom headroom = tracker.getHeadroom(flavors);
+        QuotaTracker.Reservation planned = headroom.take("f", true);
+        assertNotNull(planned);
+        assertNull(headroom.take("f", false));
+        planned.cancel();
+
+        // Completed boots are accounted for once the limits are refreshed
+        used.set(1);
+        server.complete();
+        fip.complete();
+        sleep();
+        headroom = tracker.getHeadroom(flavors);
+        assertNotNull(headroom.take("f", true));
+        assertNull(headroom.take("f", false));
+    }
+
+    @Test
+    public void reservePlannedMachines() {
+        QuotaTracker.staleness = 0;
+        AtomicInteger used = new AtomicInteger(0);
+        QuotaTracker tracker = new QuotaTracker(() -> limits(3, used.get(), -1, 0, -1, 0, -1, 0));
+
+        QuotaTracker.Reservation booted = tracker.getHeadroom(flavors).take("f", false);
+        QuotaTracker.Reservation cancelled = tracker.getHeadroom(flavors).take("f", false);
+        assertNotNull(booted);
+        assertNotNull(cancelled);
+
+        // Planned by earlier snapshots
+        QuotaTracker.Headroom headroom = tracker.getHeadroom(flavors);
+        assertNotNull(headroom.take("f", false));
+        assertNull(headroom.take("f", false));
+        headroom = tracker.getHeadroom(flavors);
+        assertNull(headroom.take("f", false));
+
+        // Server boot covered by the planned reservation
+        booted.provision(() -> {
+            tracker.reserveServer(() -> flavor);
+            assertNull(tracker.getHeadroom(flavors).take("f", false));
+            return null;
+        });
+        cancelled.cancel();
+
+        used.set(1);
+        sleep();
+        headroom = tracker.getHeadroom(flavors);
+        assertNotNull(headroom.take("f", false));
+        assertNull(headroom.take("f", false));
+    }
+
+    @Test
+    public void doNotBlockReservationsWhileFetchingLimits() throws Exception {
+        QuotaTracker.staleness = 0;
+        OneShotEvent fetching = new OneShotEvent();
+        OneShotEvent fetched = new OneShotEvent();
+        AtomicInteger fetches = new AtomicInteger(0);
+        QuotaTracker tracker = new QuotaTracker(() -> {
+            if (fetches.incrementAndGet() > 1) {
+                fetching.signal();
+                try {
+                    fetched.block();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return limits(10, 0, -1, 0, -1, 0, -1, 0);
+        });
+        tracker.getHeadroom(flavors);
+        sleep();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<QuotaTracker.Headroom> refresh = executor.submit(() -> tracker.getHeadroom(flavors));
+            fetching.block();
+
+            // Would wait for the fetch to finish if it held the lock
+            executor.submit(() -> {
+                tracker.reserveFloatingIp().complete();
+                tracker.reserveServer(() -> flavor).complete();
+            }).get(5, TimeUnit.SECONDS);
+
+            fetched.signal();
+            assertNotNull(refresh.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Flavor flavor(int vcpus, int ram) {
+        Flavor flavor = mock(Flavor.class);
+        when(flavor.getVcpus()).thenReturn(vcpus);
+        when(flavor.getRam()).thenReturn(ram);
+        return flavor;
+    }
+
+    private static AbsoluteLimit limits(int instances, int instancesUsed, int cores, int coresUsed, int ram, int ramUsed, int fips, int fipsUsed) {
+        AbsoluteLimit limit = mock(AbsoluteLimit.class);
+        when(limit.getMaxTotalInstances()).thenReturn(instances);
+        when(limit.getTotalInstancesUsed()).thenReturn(instancesUsed);
+        when(limit.getMaxTotalCores()).thenReturn(cores);
+        when(limit.getTotalCoresUsed()).thenReturn(coresUsed);
+        when(limit.getMaxTotalRAMSize()).thenReturn(ram);
+        when(limit.getTotalRAMUsed()).thenReturn(ramUsed);
+        when(limit.getMaxTotalFloatingIps()).thenReturn(fips);
+        when(limit.getTotalFloatingIpsUsed()).thenReturn(fipsUsed);
+        return limit;
+    }
+}
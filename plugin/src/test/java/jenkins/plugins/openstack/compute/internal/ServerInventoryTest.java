@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.plugins.openstack.compute.internal;
+
+import org.junit.Test;
+import org.openstack4j.model.compute.Server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServerInventoryTest {
+
+    // null for full listing, time for changes-since
+    private final List<String> queries = new ArrayList<>();
+
+    @Test
+    public void reuseFreshSnapshot() {
+        Server ours = server("ours", Server.Status.ACTIVE);
+        ServerInventory inventory = inventory(q -> Collections.singletonList(ours));
+
+        assertThat(inventory.get(60_000), containsInAnyOrder(ours));
+        assertThat(inventory.get(60_000), containsInAnyOrder(ours));
+        assertEquals(1, queries.size());
+        assertNull(queries.get(0));
+    }
+
+    @Test
+    public void refreshWithDelta() {
+        Server keep = server("keep", Server.Status.ACTIVE);
+        Server gone = server("gone", Server.Status.ACTIVE);
+        Server added = server("added", Server.Status.BUILD);
+        Server deleted = server("gone", Server.Status.DELETED);
+        Server foreign = server("foreign", Server.Status.ACTIVE);
+        ServerInventory inventory = inventory(since -> since == null
+                ? Arrays.asList(keep, gone, foreign)
+                : Arrays.asList(added, deleted, foreign)
+        );
+
+        assertThat(inventory.get(0), containsInAnyOrder(keep, gone));
+        assertThat(inventory.get(0), containsInAnyOrder(keep, added));
+        assertEquals(2, queries.size());
+        assertNotNull(queries.get(1));
+    }
+
+    @Test
+    public void trackChangesMadeByUs() {
+        ServerInventory inventory = inventory(q -> Collections.emptyList());
+        assertThat(inventory.get(60_000), empty());
+
+        Server booted = server("booted", Server.Status.ACTIVE);
+        inventory.put(booted);
+        inventory.put(server("foreign", Server.Status.ACTIVE));
+        assertThat(inventory.get(60_000), containsInAnyOrder(booted));
+
+        inventory.remove("booted");
+        assertThat(inventory.get(60_000), empty());
+        assertEquals(1, queries.size());
+    }
+
+    @Test
+    public void keepChangesMadeDuringRefresh() {
+        Server kept = server("kept", Server.Status.ACTIVE);
+        Server deleted = server("deleted", Server.Status.ACTIVE);
+        Server booted = server("booted", Server.Status.ACTIVE);
+        ServerInventory[] inventory = new ServerInventory[1];
+        inventory[0] = inventory(since -> {
+            // Listed before the server was deleted and the other booted, the changes arrive while the query is running
+            inventory[0].remove("deleted");
+            inventory[0].put(booted);
+            return Arrays.asList(kept, deleted);
+        });
+
+        assertThat(inventory[0].get(0), containsInAnyOrder(kept, booted));
+        assertThat(inventory[0].get(60_000), containsInAnyOrder(kept, booted));
+
+        // Delta refresh as well
+        inventory[0].put(deleted);
+        assertThat(inventory[0].get(0), containsInAnyOrder(kept, booted));
+        assertEquals(2, queries.size());
+        assertNotNull(queries.get(1));
+
+        // Tracked right away once the refresh is over
+        inventory[0].put(deleted);
+        assertThat(inventory[0].get(60_000), containsInAnyOrder(kept, booted, deleted));
+    }
+
+    private ServerInventory inventory(Function<String, List<? extends Server>> lister) {
+        return new ServerInventory(() -> {
+            queries.add(null);
+            return lister.apply(null);
+        }, since -> {
+            queries.add(since);
+            return lister.apply(since);
+        }, s -> !s.getId().equals("foreign"));
+    }
+
+    private Server server(String id, Server.Status status) {
+        Server mock = mock(Server.class);
+        when(mock.getId()).thenReturn(id);
+        when(mock.getStatus()).thenReturn(status);
+        return mock;
+    }
+}